@@ -0,0 +1,4 @@
+# 没有通过LiveEventBusInitializer注册时（例如在清单中移除了它），Dispatchers通过反射查找主线程的Dispatcher
+-keep class com.scholar.livedatabus.liveevent.MainThreadManager {
+    public static com.scholar.livedatabus.liveevent.MainThreadManager getInstance();
+}
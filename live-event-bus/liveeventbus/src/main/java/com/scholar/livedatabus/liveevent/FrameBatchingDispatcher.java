@@ -0,0 +1,40 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.MainThread;
+import android.support.annotation.RequiresApi;
+import android.view.Choreographer;
+
+/**
+ * 按帧对齐的{@link BatchingDispatcher}：两帧之间所有key的postValue在下一帧的Choreographer回调中一次执行，
+ * 和动画回调一起在绘制之前运行，每帧最多占用一次主线程。需要在主线程上创建
+ * <pre class="prettyprint">
+ * if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+ *     Dispatchers.setDefault(new FrameBatchingDispatcher());
+ * }
+ * </pre>
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+@RequiresApi(16)
+public class FrameBatchingDispatcher extends BatchingDispatcher implements Choreographer.FrameCallback {
+
+    private final Choreographer mChoreographer;
+
+    @MainThread
+    public FrameBatchingDispatcher() {
+        super(MainThreadManager.getInstance());
+        mChoreographer = Choreographer.getInstance();
+    }
+
+    @Override
+    protected void scheduleDrain() {
+        //Choreographer可以在任意线程上提交回调
+        mChoreographer.postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        drain();
+    }
+}
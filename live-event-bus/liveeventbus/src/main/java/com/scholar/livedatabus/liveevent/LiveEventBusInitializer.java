@@ -0,0 +1,55 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * 在Application.onCreate之前把{@link MainThreadManager}注册为默认的{@link Dispatcher}，
+ * 不依赖反射，混淆之后也能找到主线程的Dispatcher。
+ * 已经通过{@link Dispatchers#setDefault(Dispatcher)}设置过时不覆盖
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public final class LiveEventBusInitializer extends ContentProvider {
+
+    @Override
+    public boolean onCreate() {
+        Dispatchers.setPlatformDefault(MainThreadManager.getInstance());
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        return null;
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        return 0;
+    }
+}
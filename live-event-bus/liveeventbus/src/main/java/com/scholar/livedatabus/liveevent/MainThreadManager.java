@@ -18,11 +18,13 @@ package com.scholar.livedatabus.liveevent;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 /**
+ * Android主线程的{@link Dispatcher}实现，是Android上的默认Dispatcher
  */
-public class MainThreadManager {
+public class MainThreadManager implements Dispatcher {
 
     private final Object mLock = new Object();
     @Nullable
@@ -51,6 +53,16 @@ public class MainThreadManager {
         return Looper.getMainLooper().getThread() == Thread.currentThread();
     }
 
+    @Override
+    public boolean isDispatchThread() {
+        return isMainThread();
+    }
+
+    @Override
+    public void post(@NonNull Runnable runnable) {
+        postToMainThread(runnable);
+    }
+
     private static class SingletonHolder {
         private static final MainThreadManager INSTANCE = new MainThreadManager();
     }
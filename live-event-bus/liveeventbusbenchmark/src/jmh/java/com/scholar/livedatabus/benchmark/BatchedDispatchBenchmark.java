@@ -0,0 +1,81 @@
+package com.scholar.livedatabus.benchmark;
+
+import com.scholar.livedatabus.LiveEventBus;
+import com.scholar.livedatabus.liveevent.BatchingDispatcher;
+import com.scholar.livedatabus.liveevent.Dispatcher;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个繁忙页面的一帧：keyCount个key各postValue若干次，再由"主线程"执行完。
+ * 对比每次postValue一条消息和{@link BatchingDispatcher}合并成一批，
+ * 辅助计数器looperMessages/posts是到达"主线程"的消息数和postValue次数，两者之比即节省的消息比例
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BatchedDispatchBenchmark {
+
+    @Param({"direct", "batching"})
+    String dispatcher;
+
+    @Param({"1", "16", "64"})
+    int keyCount;
+
+    @Param({"4"})
+    int postsPerKey;
+
+    private LiveEventBus mBus;
+    private String[] mKeys;
+    private final Object mPayload = new Object();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Messages {
+        public long posts;
+        public long looperMessages;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            posts = 0;
+            looperMessages = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        BenchmarkDispatcher.INSTANCE.clear();
+        Dispatcher target = BenchmarkDispatcher.INSTANCE;
+        mBus = LiveEventBus.create("batching".equals(dispatcher) ? new BatchingDispatcher(target) : target);
+        mKeys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            mKeys[i] = "frame_key_" + i;
+            mBus.with(mKeys[i]).observeForever(new BenchmarkLiveEvent.CountingObserver<>());
+        }
+    }
+
+    @Benchmark
+    public int postFrameAndDrain(Messages messages) {
+        long before = BenchmarkDispatcher.INSTANCE.getPostedMessages();
+        for (int i = 0; i < postsPerKey; i++) {
+            for (String key : mKeys) {
+                mBus.with(key).postValue(mPayload);
+            }
+        }
+        int executed = BenchmarkDispatcher.INSTANCE.drain();
+        messages.posts += postsPerKey * keyCount;
+        messages.looperMessages += BenchmarkDispatcher.INSTANCE.getPostedMessages() - before;
+        return executed;
+    }
+}
@@ -0,0 +1,56 @@
+package com.scholar.livedatabus.benchmark;
+
+import com.scholar.livedatabus.liveevent.LiveEvent;
+import com.scholar.livedatabus.liveevent.LiveEventObserver;
+
+import java.util.Random;
+
+/**
+ * 基准测试用的LiveEvent以及观察者的构造工具
+ */
+public class BenchmarkLiveEvent<T> extends LiveEvent<T> {
+
+    public static final String PRIORITIES_SAME = "same";
+    public static final String PRIORITIES_SPREAD = "spread";
+    public static final String PRIORITIES_INTERCEPTORS = "interceptors";
+
+    public BenchmarkLiveEvent(Object key) {
+        super(key, BenchmarkDispatcher.INSTANCE);
+    }
+
+    /**
+     * 按分布生成观察者的权重
+     * <ul>
+     * <li>same: 全部是默认权重</li>
+     * <li>spread: 均匀分布在0~31之间</li>
+     * <li>interceptors: 绝大多数是默认权重，每10个里有一个0~15的系统级拦截者</li>
+     * </ul>
+     */
+    public static int[] priorities(String distribution, int count) {
+        Random random = new Random(42);
+        int[] priorities = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (PRIORITIES_SPREAD.equals(distribution)) {
+                priorities[i] = random.nextInt(2 * DEFAULT_PRIORITY);
+            } else if (PRIORITIES_INTERCEPTORS.equals(distribution) && i % 10 == 9) {
+                priorities[i] = random.nextInt(DEFAULT_PRIORITY);
+            } else {
+                priorities[i] = DEFAULT_PRIORITY;
+            }
+        }
+        return priorities;
+    }
+
+    /**
+     * 不消费事件、只计数的观察者
+     */
+    public static class CountingObserver<T> implements LiveEventObserver<T> {
+        public int count;
+
+        @Override
+        public boolean onChanged(T t) {
+            count++;
+            return false;
+        }
+    }
+}
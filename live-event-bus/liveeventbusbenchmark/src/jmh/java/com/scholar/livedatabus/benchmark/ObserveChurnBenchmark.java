@@ -0,0 +1,53 @@
+package com.scholar.livedatabus.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在已有N个观察者的key上反复注册/注销一个观察者
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ObserveChurnBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int observerCount;
+
+    @Param({BenchmarkLiveEvent.PRIORITIES_SAME, BenchmarkLiveEvent.PRIORITIES_SPREAD})
+    String priorities;
+
+    private BenchmarkLiveEvent<Object> mLiveEvent;
+    private StubLifecycleOwner mOwner;
+    private final BenchmarkLiveEvent.CountingObserver<Object> mChurnObserver =
+            new BenchmarkLiveEvent.CountingObserver<>();
+
+    @Setup
+    public void setUp() {
+        mLiveEvent = new BenchmarkLiveEvent<>("churn");
+        mOwner = new StubLifecycleOwner();
+        for (int priority : BenchmarkLiveEvent.priorities(priorities, observerCount)) {
+            mLiveEvent.observe(mOwner, new BenchmarkLiveEvent.CountingObserver<>(), priority);
+        }
+    }
+
+    @Benchmark
+    public void observeAndRemove() {
+        mLiveEvent.observe(mOwner, mChurnObserver);
+        mLiveEvent.removeObserver(mChurnObserver);
+    }
+
+    @Benchmark
+    public void observeForeverAndRemove() {
+        mLiveEvent.observeForever(mChurnObserver);
+        mLiveEvent.removeObserver(mChurnObserver);
+    }
+}
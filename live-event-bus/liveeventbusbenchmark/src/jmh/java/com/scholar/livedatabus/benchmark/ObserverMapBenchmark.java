@@ -0,0 +1,89 @@
+package com.scholar.livedatabus.benchmark;
+
+import com.scholar.livedatabus.liveevent.FastSafeIterableMap;
+import com.scholar.livedatabus.liveevent.LiveEvent;
+import com.scholar.livedatabus.liveevent.SafeIterableMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 观察者容器的注册/注销/查找开销：链表实现{@link SafeIterableMap}对比
+ * 带Hash索引的{@link FastSafeIterableMap}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ObserverMapBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int observerCount;
+
+    @Param({"linked", "hashed"})
+    String map;
+
+    private Object[] mKeys;
+    private SafeIterableMap<Object, Object> mFilled;
+    private int mCursor;
+    private final Object mInterceptor = new Object();
+
+    @Setup
+    public void setUp() {
+        mKeys = new Object[observerCount];
+        for (int i = 0; i < observerCount; i++) {
+            mKeys[i] = new Object();
+        }
+        mFilled = newMap();
+        for (Object key : mKeys) {
+            mFilled.putIfAbsent(key, key, LiveEvent.DEFAULT_PRIORITY);
+        }
+    }
+
+    /**
+     * 注册所有观察者再全部注销，对应一个页面的创建和销毁
+     */
+    @Benchmark
+    public int registerAndRemoveAll() {
+        SafeIterableMap<Object, Object> observers = newMap();
+        for (Object key : mKeys) {
+            observers.putIfAbsent(key, key, LiveEvent.DEFAULT_PRIORITY);
+        }
+        for (Object key : mKeys) {
+            observers.remove(key);
+        }
+        return observers.size();
+    }
+
+    /**
+     * 大量默认权重的观察者之外注册再注销一个权重更小（更早收到）的拦截者，
+     * 插入位置由权重索引直接找到，不需要从尾部扫描整个默认权重的桶
+     */
+    @Benchmark
+    public int insertInterceptor() {
+        mFilled.putIfAbsent(mInterceptor, mInterceptor, LiveEvent.DEFAULT_PRIORITY - 1);
+        mFilled.remove(mInterceptor);
+        return mFilled.size();
+    }
+
+    /**
+     * 重复注册已经存在的观察者，只有查找开销
+     */
+    @Benchmark
+    public Object lookupExisting() {
+        Object key = mKeys[mCursor];
+        mCursor = (mCursor + 1) % observerCount;
+        return mFilled.putIfAbsent(key, key, LiveEvent.DEFAULT_PRIORITY);
+    }
+
+    private SafeIterableMap<Object, Object> newMap() {
+        return "hashed".equals(map) ? new FastSafeIterableMap<>() : new SafeIterableMap<>();
+    }
+}
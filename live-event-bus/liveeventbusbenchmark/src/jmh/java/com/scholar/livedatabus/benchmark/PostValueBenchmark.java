@@ -0,0 +1,57 @@
+package com.scholar.livedatabus.benchmark;
+
+import com.scholar.livedatabus.liveevent.LiveEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一批postValue连同主线程执行的完整开销，每次操作 = batch次postValue + 一次drain
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PostValueBenchmark {
+
+    @Param({"each", "conflate", "deliverAll"})
+    String postMode;
+
+    @Param({"1", "16", "256"})
+    int batch;
+
+    @Param({"10"})
+    int observerCount;
+
+    private BenchmarkLiveEvent<Object> mLiveEvent;
+    private final Object mPayload = new Object();
+
+    @Setup
+    public void setUp() {
+        BenchmarkDispatcher.INSTANCE.clear();
+        mLiveEvent = new BenchmarkLiveEvent<>("post_value");
+        if ("conflate".equals(postMode)) {
+            mLiveEvent.setPostMode(LiveEvent.POST_MODE_CONFLATE);
+        } else if ("deliverAll".equals(postMode)) {
+            mLiveEvent.setPostMode(LiveEvent.POST_MODE_DELIVER_ALL);
+        }
+        for (int i = 0; i < observerCount; i++) {
+            mLiveEvent.observeForever(new BenchmarkLiveEvent.CountingObserver<>());
+        }
+    }
+
+    @Benchmark
+    public int postBatchAndDrain() {
+        for (int i = 0; i < batch; i++) {
+            mLiveEvent.postValue(mPayload);
+        }
+        return BenchmarkDispatcher.INSTANCE.drain();
+    }
+}
@@ -0,0 +1,68 @@
+package com.scholar.livedatabus.benchmark;
+
+import com.scholar.livedatabus.liveevent.IntLiveEvent;
+import com.scholar.livedatabus.liveevent.IntLiveEventObserver;
+import com.scholar.livedatabus.liveevent.LiveEventObserver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 高频计数场景：Integer事件（每次发布都装箱）对比IntLiveEvent
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PrimitiveChannelBenchmark {
+
+    @Param({"10"})
+    int observerCount;
+
+    private BenchmarkLiveEvent<Integer> mBoxed;
+    private IntLiveEvent mPrimitive;
+    private int mCounter = 1 << 20;
+    private long mSum;
+
+    @Setup
+    public void setUp() {
+        mBoxed = new BenchmarkLiveEvent<>("boxed");
+        mPrimitive = new IntLiveEvent("primitive", BenchmarkDispatcher.INSTANCE);
+        for (int i = 0; i < observerCount; i++) {
+            mBoxed.observeForever(new LiveEventObserver<Integer>() {
+                @Override
+                public boolean onChanged(Integer value) {
+                    mSum += value;
+                    return false;
+                }
+            });
+            mPrimitive.observeForever(new IntLiveEventObserver() {
+                @Override
+                public boolean onChanged(int value) {
+                    mSum += value;
+                    return false;
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public long boxedSetValue() {
+        //超出Integer缓存范围，每次都会真正装箱
+        mBoxed.setValue(mCounter++);
+        return mSum;
+    }
+
+    @Benchmark
+    public long primitiveSetValue() {
+        mPrimitive.setValue(mCounter++);
+        return mSum;
+    }
+}
@@ -0,0 +1,75 @@
+package com.scholar.livedatabus.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发布路径的分配量：预热后setValue和postValue都应该是0字节/次。
+ * 除了gc profiler的gc.alloc.rate.norm之外，每轮结束时还会用线程分配计数器复核一次，
+ * 超过阈值直接让基准测试失败
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PublishAllocationBenchmark {
+
+    private static final int VERIFY_OPERATIONS = 100000;
+
+    @Param({"10"})
+    int observerCount;
+
+    private BenchmarkLiveEvent<Object> mLiveEvent;
+    private final Object mPayload = new Object();
+
+    @Setup
+    public void setUp() {
+        BenchmarkDispatcher.INSTANCE.clear();
+        mLiveEvent = new BenchmarkLiveEvent<>("allocation");
+        for (int i = 0; i < observerCount; i++) {
+            mLiveEvent.observeForever(new BenchmarkLiveEvent.CountingObserver<>());
+        }
+    }
+
+    @Benchmark
+    public void setValue() {
+        mLiveEvent.setValue(mPayload);
+    }
+
+    @Benchmark
+    public int postValueAndDrain() {
+        mLiveEvent.postValue(mPayload);
+        return BenchmarkDispatcher.INSTANCE.drain();
+    }
+
+    @TearDown(Level.Iteration)
+    public void verifyZeroAllocation() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < VERIFY_OPERATIONS; i++) {
+            setValue();
+            postValueAndDrain();
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        //读取计数器本身会有少量固定分配，平均到每次操作应当远小于1字节
+        if (allocated >= VERIFY_OPERATIONS) {
+            throw new IllegalStateException("publish path allocated " + allocated + " bytes in "
+                    + VERIFY_OPERATIONS + " operations");
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.scholar.livedatabus.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * setValue分发给N个观察者的开销，按观察者数量、权重分布和绑定方式扫描
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SetValueFanOutBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    int observerCount;
+
+    @Param({BenchmarkLiveEvent.PRIORITIES_SAME, BenchmarkLiveEvent.PRIORITIES_SPREAD,
+            BenchmarkLiveEvent.PRIORITIES_INTERCEPTORS})
+    String priorities;
+
+    @Param({"forever", "lifecycle"})
+    String binding;
+
+    private BenchmarkLiveEvent<Object> mLiveEvent;
+    private final Object mPayload = new Object();
+
+    @Setup
+    public void setUp() {
+        mLiveEvent = new BenchmarkLiveEvent<>("fan_out");
+        StubLifecycleOwner owner = new StubLifecycleOwner();
+        int[] observerPriorities = BenchmarkLiveEvent.priorities(priorities, observerCount);
+        for (int priority : observerPriorities) {
+            BenchmarkLiveEvent.CountingObserver<Object> observer =
+                    new BenchmarkLiveEvent.CountingObserver<>();
+            if ("lifecycle".equals(binding)) {
+                mLiveEvent.observe(owner, observer, priority);
+            } else {
+                mLiveEvent.observeForever(observer, priority);
+            }
+        }
+    }
+
+    @Benchmark
+    public void setValue() {
+        mLiveEvent.setValue(mPayload);
+    }
+}
@@ -0,0 +1,99 @@
+package com.scholar.livedatabus.benchmark;
+
+import com.scholar.livedatabus.liveevent.EventFunction;
+import com.scholar.livedatabus.liveevent.EventPredicate;
+import com.scholar.livedatabus.liveevent.LiveEvent;
+import com.scholar.livedatabus.liveevent.LiveEventObserver;
+import com.scholar.livedatabus.liveevent.TransformedLiveEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * map -> filter -> map三级派生事件的开销：
+ * hops是每一级注册一个观察者、在下一级的LiveEvent上setValue，每一级都完整分发一次；
+ * fused是{@link TransformedLiveEvent}融合成一个观察者，只在最后分发一次
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransformChainBenchmark {
+
+    private static final EventFunction<Integer, Integer> DOUBLE = new EventFunction<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer input) {
+            return input * 2;
+        }
+    };
+    private static final EventPredicate<Integer> ALL = new EventPredicate<Integer>() {
+        @Override
+        public boolean test(Integer value) {
+            return value != null;
+        }
+    };
+    private static final EventFunction<Integer, Integer> NEGATE = new EventFunction<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer input) {
+            return -input;
+        }
+    };
+
+    @Param({"hops", "fused"})
+    String chain;
+
+    private BenchmarkLiveEvent<Integer> mSource;
+    private BenchmarkLiveEvent.CountingObserver<Integer> mSink;
+    //缓存范围内的Integer，不测量装箱
+    private final Integer mPayload = 21;
+
+    @Setup
+    public void setUp() {
+        mSource = new BenchmarkLiveEvent<>("transform_source");
+        mSink = new BenchmarkLiveEvent.CountingObserver<>();
+        if ("fused".equals(chain)) {
+            TransformedLiveEvent.map(TransformedLiveEvent.filter(TransformedLiveEvent.map(mSource, DOUBLE), ALL),
+                    NEGATE).observeForever(mSink);
+            return;
+        }
+        final BenchmarkLiveEvent<Integer> doubled = new BenchmarkLiveEvent<>("transform_doubled");
+        final BenchmarkLiveEvent<Integer> filtered = new BenchmarkLiveEvent<>("transform_filtered");
+        final BenchmarkLiveEvent<Integer> negated = new BenchmarkLiveEvent<>("transform_negated");
+        hop(mSource, doubled, DOUBLE);
+        doubled.observeForever(new LiveEventObserver<Integer>() {
+            @Override
+            public boolean onChanged(Integer value) {
+                if (ALL.test(value)) {
+                    filtered.setValue(value);
+                }
+                return false;
+            }
+        });
+        hop(filtered, negated, NEGATE);
+        negated.observeForever(mSink);
+    }
+
+    private static void hop(LiveEvent<Integer> from, final LiveEvent<Integer> to,
+                            final EventFunction<Integer, Integer> function) {
+        from.observeForever(new LiveEventObserver<Integer>() {
+            @Override
+            public boolean onChanged(Integer value) {
+                to.setValue(function.apply(value));
+                return false;
+            }
+        });
+    }
+
+    @Benchmark
+    public int setValue() {
+        mSource.setValue(mPayload);
+        return mSink.count;
+    }
+}
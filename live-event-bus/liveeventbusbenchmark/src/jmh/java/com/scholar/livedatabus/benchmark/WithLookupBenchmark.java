@@ -0,0 +1,98 @@
+package com.scholar.livedatabus.benchmark;
+
+import com.scholar.livedatabus.EventKey;
+import com.scholar.livedatabus.LiveEventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多线程下with()查找已存在key的吞吐：EventKey按id索引数组，普通key查找按名称索引的ConcurrentHashMap，
+ * 对照组是原来synchronized + HashMap的实现
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(Threads.MAX)
+public class WithLookupBenchmark {
+
+    @Param({"eventKey", "concurrent", "synchronized"})
+    String registry;
+
+    @Param({"16", "1024"})
+    int keyCount;
+
+    private String[] mKeys;
+    private EventKey<?>[] mEventKeys;
+    //没有观察者和值的通道只被总线弱引用，持有它们避免测量到回收和重建
+    private Object[] mChannels;
+    private final SynchronizedRegistry mSynchronizedRegistry = new SynchronizedRegistry();
+
+    @Setup
+    public void setUp() {
+        mKeys = new String[keyCount];
+        mEventKeys = new EventKey<?>[keyCount];
+        mChannels = new Object[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            mKeys[i] = "key_" + i;
+            mEventKeys[i] = EventKey.of(mKeys[i], Object.class);
+            mChannels[i] = LiveEventBus.get().with(mKeys[i]);
+            mSynchronizedRegistry.with(mKeys[i]);
+        }
+    }
+
+    @Benchmark
+    public Object with(Cursor cursor) {
+        int index = cursor.next();
+        if ("eventKey".equals(registry)) {
+            return LiveEventBus.get().with(mEventKeys[index]);
+        }
+        String key = mKeys[index];
+        if ("concurrent".equals(registry)) {
+            return LiveEventBus.get().with(key);
+        }
+        return mSynchronizedRegistry.with(key);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int mIndex;
+        private int mKeyCount;
+
+        @Setup
+        public void setUp(WithLookupBenchmark benchmark) {
+            mKeyCount = benchmark.keyCount;
+            mIndex = (int) (Thread.currentThread().getId() % mKeyCount);
+        }
+
+        int next() {
+            mIndex = mIndex + 1 == mKeyCount ? 0 : mIndex + 1;
+            return mIndex;
+        }
+    }
+
+    /**
+     * 原来LiveEventBus.with()的实现，作为对照组
+     */
+    private static class SynchronizedRegistry {
+        private final Map<Object, Object> mBus = new HashMap<>();
+
+        synchronized Object with(Object key) {
+            if (!mBus.containsKey(key)) {
+                mBus.put(key, new Object());
+            }
+            return mBus.get(key);
+        }
+    }
+}
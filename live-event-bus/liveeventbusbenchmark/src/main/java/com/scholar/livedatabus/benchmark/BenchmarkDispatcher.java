@@ -0,0 +1,69 @@
+package com.scholar.livedatabus.benchmark;
+
+import android.support.annotation.NonNull;
+
+import com.scholar.livedatabus.liveevent.Dispatcher;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基准测试用的Dispatcher：任意线程都被当作分发线程，这样JMH的工作线程可以直接调用setValue；
+ * post的任务进入一个队列，由{@link #drain()}在调用线程上依次执行，模拟主线程Looper。
+ * 队列是预先扩容好的ArrayDeque，入队不会分配对象，不会干扰分配量的测量
+ */
+public class BenchmarkDispatcher implements Dispatcher {
+
+    public static final BenchmarkDispatcher INSTANCE = new BenchmarkDispatcher();
+
+    private final ArrayDeque<Runnable> mQueue = new ArrayDeque<>(1024);
+    private final AtomicLong mPostedMessages = new AtomicLong();
+
+    @Override
+    public boolean isDispatchThread() {
+        return true;
+    }
+
+    @Override
+    public void post(@NonNull Runnable runnable) {
+        mPostedMessages.incrementAndGet();
+        synchronized (mQueue) {
+            mQueue.offer(runnable);
+        }
+    }
+
+    /**
+     * 执行队列中所有的任务
+     *
+     * @return 执行的任务数
+     */
+    public int drain() {
+        int count = 0;
+        Runnable r;
+        while ((r = poll()) != null) {
+            r.run();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return 累计post到"主线程"的消息数
+     */
+    public long getPostedMessages() {
+        return mPostedMessages.get();
+    }
+
+    public void clear() {
+        synchronized (mQueue) {
+            mQueue.clear();
+        }
+        mPostedMessages.set(0);
+    }
+
+    private Runnable poll() {
+        synchronized (mQueue) {
+            return mQueue.poll();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.scholar.livedatabus.benchmark;
+
+import android.support.annotation.Nullable;
+
+import com.scholar.livedatabus.EventCodecs;
+import com.scholar.livedatabus.LiveEventBus;
+import com.scholar.livedatabus.SharedMemoryTransport;
+import com.scholar.livedatabus.liveevent.ExecutorDispatcher;
+import com.scholar.livedatabus.liveevent.LiveEventObserver;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 两个JVM进程之间通过{@link SharedMemoryTransport}往返的延迟，先启动pong再启动ping：
+ * <pre>
+ * java -cp ... com.scholar.livedatabus.benchmark.SharedMemoryPingPong /tmp/leb pong
+ * java -cp ... com.scholar.livedatabus.benchmark.SharedMemoryPingPong /tmp/leb ping 10000
+ * </pre>
+ * ping每收到一次pong就发出下一次ping，结束时输出往返延迟的分位数
+ */
+public class SharedMemoryPingPong {
+
+    private static final String PING = "ping";
+    private static final String PONG = "pong";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: SharedMemoryPingPong <directory> ping [count] | pong");
+            System.exit(1);
+        }
+        File directory = new File(args[0]);
+        boolean ping = PING.equals(args[1]);
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+
+        ExecutorDispatcher dispatcher = new ExecutorDispatcher();
+        final LiveEventBus bus = LiveEventBus.create(dispatcher);
+        bus.setCodec(PING, EventCodecs.LONG);
+        bus.setCodec(PONG, EventCodecs.LONG);
+        SharedMemoryTransport transport = SharedMemoryTransport.open(bus, directory, args[1]);
+        transport.setPollInterval(50, TimeUnit.MICROSECONDS);
+        transport.mirror(PING);
+        transport.mirror(PONG);
+        transport.start();
+        if (ping) {
+            runPing(bus, dispatcher, count);
+        } else {
+            runPong(bus, dispatcher);
+        }
+        transport.close();
+        dispatcher.shutdown();
+    }
+
+    private static void runPong(final LiveEventBus bus, ExecutorDispatcher dispatcher) throws InterruptedException {
+        dispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                bus.with(PING, Long.class).observeForever(new LiveEventObserver<Long>() {
+                    @Override
+                    public boolean onChanged(@Nullable Long sequence) {
+                        bus.with(PONG, Long.class).setValue(sequence);
+                        //负数表示结束
+                        if (sequence != null && sequence < 0) {
+                            synchronized (SharedMemoryPingPong.class) {
+                                SharedMemoryPingPong.class.notifyAll();
+                            }
+                        }
+                        return false;
+                    }
+                });
+            }
+        });
+        System.out.println("pong ready");
+        synchronized (SharedMemoryPingPong.class) {
+            SharedMemoryPingPong.class.wait();
+        }
+    }
+
+    private static void runPing(final LiveEventBus bus, ExecutorDispatcher dispatcher, final int count)
+            throws InterruptedException {
+        final long[] roundTrips = new long[count];
+        final long[] sentAt = new long[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        //等待pong进程发现本进程的文件
+        Thread.sleep(500);
+        dispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                bus.with(PONG, Long.class).observeForever(new LiveEventObserver<Long>() {
+                    @Override
+                    public boolean onChanged(@Nullable Long sequence) {
+                        if (sequence == null || sequence < 0) {
+                            return false;
+                        }
+                        int index = (int) (long) sequence;
+                        roundTrips[index] = System.nanoTime() - sentAt[0];
+                        if (index + 1 == count) {
+                            bus.with(PING, Long.class).setValue(-1L);
+                            done.countDown();
+                        } else {
+                            sentAt[0] = System.nanoTime();
+                            bus.with(PING, Long.class).setValue((long) index + 1);
+                        }
+                        return false;
+                    }
+                });
+                sentAt[0] = System.nanoTime();
+                bus.with(PING, Long.class).setValue(0L);
+            }
+        });
+        if (!done.await(60, TimeUnit.SECONDS)) {
+            System.out.println("timed out, is the pong process running?");
+            return;
+        }
+        //第一次往返包含类加载等预热，不计入
+        long[] sorted = Arrays.copyOfRange(roundTrips, 1, count);
+        Arrays.sort(sorted);
+        System.out.println("round trips: " + sorted.length
+                + ", p50 " + TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length / 2]) + "us"
+                + ", p99 " + TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length * 99 / 100]) + "us"
+                + ", max " + TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length - 1]) + "us");
+    }
+}
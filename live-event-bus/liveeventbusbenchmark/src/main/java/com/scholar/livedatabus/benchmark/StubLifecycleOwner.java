@@ -0,0 +1,68 @@
+package com.scholar.livedatabus.benchmark;
+
+import android.arch.lifecycle.GenericLifecycleObserver;
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.LifecycleOwner;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试用的LifecycleOwner，状态由测试代码直接控制
+ */
+public class StubLifecycleOwner implements LifecycleOwner {
+
+    private final StubLifecycle mLifecycle = new StubLifecycle();
+
+    public StubLifecycleOwner() {
+        this(Lifecycle.State.RESUMED);
+    }
+
+    public StubLifecycleOwner(Lifecycle.State state) {
+        mLifecycle.mState = state;
+    }
+
+    @NonNull
+    @Override
+    public Lifecycle getLifecycle() {
+        return mLifecycle;
+    }
+
+    public void moveTo(Lifecycle.State state, Lifecycle.Event event) {
+        mLifecycle.mState = state;
+        List<LifecycleObserver> observers = new ArrayList<>(mLifecycle.mObservers);
+        for (LifecycleObserver observer : observers) {
+            if (observer instanceof GenericLifecycleObserver) {
+                ((GenericLifecycleObserver) observer).onStateChanged(this, event);
+            }
+        }
+    }
+
+    private class StubLifecycle extends Lifecycle {
+        private final List<LifecycleObserver> mObservers = new ArrayList<>();
+        private State mState;
+
+        @Override
+        public void addObserver(@NonNull LifecycleObserver observer) {
+            mObservers.add(observer);
+            //和LifecycleRegistry一样，新加入的观察者会立即同步到当前状态
+            if (observer instanceof GenericLifecycleObserver) {
+                ((GenericLifecycleObserver) observer).onStateChanged(StubLifecycleOwner.this,
+                        Event.ON_ANY);
+            }
+        }
+
+        @Override
+        public void removeObserver(@NonNull LifecycleObserver observer) {
+            mObservers.remove(observer);
+        }
+
+        @NonNull
+        @Override
+        public State getCurrentState() {
+            return mState;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.scholar.livedatabus.compiler;
+
+import com.scholar.livedatabus.Subscribe;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * 为{@link Subscribe}方法生成一个实现SubscriberIndex的类，类名由参数{@code liveEventBusIndex}指定。
+ * <p>
+ * 每个包含Subscribe方法的类生成一个SubscriberBinder，包括从父类继承的方法；
+ * 每个方法对应一个LiveEventObserver匿名类，每个不同的key和类型对应一个EventKey常量，
+ * 注册时直接按id查找事件，不需要反射也不需要计算hash
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+@SupportedAnnotationTypes("com.scholar.livedatabus.Subscribe")
+@SupportedOptions(SubscribeProcessor.OPTION_INDEX)
+public class SubscribeProcessor extends AbstractProcessor {
+
+    static final String OPTION_INDEX = "liveEventBusIndex";
+
+    private boolean mWritten;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * @return 只支持{@link Subscribe}，收到它时总是返回true声明占有，其他处理器不会再处理它
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (annotations.isEmpty()) {
+            return false;
+        }
+        if (mWritten) {
+            return true;
+        }
+        Messager messager = processingEnv.getMessager();
+        String index = processingEnv.getOptions().get(OPTION_INDEX);
+        if (index == null) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "No option " + OPTION_INDEX
+                    + " passed to the annotation processor, e.g. com.example.MyLiveEventBusIndex");
+            return true;
+        }
+        Set<TypeElement> subscribers = new HashSet<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(Subscribe.class)) {
+            Element enclosing = element.getEnclosingElement();
+            if (enclosing instanceof TypeElement) {
+                subscribers.add((TypeElement) enclosing);
+            }
+        }
+        //有序输出，保证每次生成的代码相同
+        Map<String, List<ExecutableElement>> methodsByClass = new LinkedHashMap<>();
+        List<TypeElement> sorted = new ArrayList<>(subscribers);
+        Collections.sort(sorted, new Comparator<TypeElement>() {
+            @Override
+            public int compare(TypeElement o1, TypeElement o2) {
+                return o1.getQualifiedName().toString().compareTo(o2.getQualifiedName().toString());
+            }
+        });
+        boolean valid = true;
+        for (TypeElement subscriber : sorted) {
+            List<ExecutableElement> methods = collectMethods(subscriber);
+            for (ExecutableElement method : methods) {
+                valid &= checkMethod(method);
+            }
+            valid &= checkAccessible(subscriber);
+            methodsByClass.put(typeName(subscriber.asType()), methods);
+        }
+        if (!valid) {
+            return true;
+        }
+        try {
+            writeIndex(index, methodsByClass);
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Could not write " + index + ": " + e);
+        }
+        mWritten = true;
+        return true;
+    }
+
+    /**
+     * 收集类自身和父类中的Subscribe方法，子类覆盖的方法只保留一个
+     */
+    private List<ExecutableElement> collectMethods(TypeElement subscriber) {
+        List<ExecutableElement> methods = new ArrayList<>();
+        Set<String> signatures = new HashSet<>();
+        Types types = processingEnv.getTypeUtils();
+        TypeElement clazz = subscriber;
+        while (clazz != null) {
+            for (Element element : clazz.getEnclosedElements()) {
+                if (element.getKind() != ElementKind.METHOD || element.getAnnotation(Subscribe.class) == null) {
+                    continue;
+                }
+                ExecutableElement method = (ExecutableElement) element;
+                StringBuilder signature = new StringBuilder(method.getSimpleName()).append('(');
+                for (Element parameter : method.getParameters()) {
+                    signature.append(types.erasure(parameter.asType())).append(',');
+                }
+                if (signatures.add(signature.toString())) {
+                    methods.add(method);
+                }
+            }
+            TypeMirror superclass = clazz.getSuperclass();
+            clazz = superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) types.asElement(superclass) : null;
+        }
+        return methods;
+    }
+
+    private boolean checkMethod(ExecutableElement method) {
+        Messager messager = processingEnv.getMessager();
+        Set<Modifier> modifiers = method.getModifiers();
+        if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "@Subscribe method must be public and not static",
+                    method);
+            return false;
+        }
+        if (method.getParameters().size() != 1) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "@Subscribe method must have exactly one parameter",
+                    method);
+            return false;
+        }
+        TypeKind returnKind = method.getReturnType().getKind();
+        if (returnKind != TypeKind.VOID && returnKind != TypeKind.BOOLEAN) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "@Subscribe method must return void or boolean",
+                    method);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean checkAccessible(TypeElement subscriber) {
+        for (Element element = subscriber; element instanceof TypeElement;
+             element = element.getEnclosingElement()) {
+            if (!element.getModifiers().contains(Modifier.PUBLIC)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Class with @Subscribe methods must be public", subscriber);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeIndex(String index, Map<String, List<ExecutableElement>> methodsByClass)
+            throws IOException {
+        int lastDot = index.lastIndexOf('.');
+        String packageName = lastDot > 0 ? index.substring(0, lastDot) : null;
+        String simpleName = index.substring(lastDot + 1);
+
+        //key和类型相同的方法共用一个EventKey常量，值为常量名
+        Map<String, String> keyConstants = new LinkedHashMap<>();
+        StringBuilder constants = new StringBuilder();
+        StringBuilder binders = new StringBuilder();
+        for (Map.Entry<String, List<ExecutableElement>> entry : methodsByClass.entrySet()) {
+            String target = entry.getKey();
+            binders.append("        BINDERS.put(").append(target).append(".class, new SubscriberBinder<")
+                    .append(target).append(">() {\n")
+                    .append("            @Override\n")
+                    .append("            public void bind(LiveEventBus bus, LifecycleOwner owner, final ")
+                    .append(target).append(" target) {\n");
+            for (ExecutableElement method : entry.getValue()) {
+                appendObserve(binders, method, keyConstants, constants);
+            }
+            binders.append("            }\n")
+                    .append("        });\n");
+        }
+
+        Writer writer = processingEnv.getFiler().createSourceFile(index).openWriter();
+        try {
+            if (packageName != null) {
+                writer.write("package " + packageName + ";\n\n");
+            }
+            writer.write("import android.arch.lifecycle.LifecycleOwner;\n"
+                    + "import com.scholar.livedatabus.EventKey;\n"
+                    + "import com.scholar.livedatabus.LiveEventBus;\n"
+                    + "import com.scholar.livedatabus.SubscriberBinder;\n"
+                    + "import com.scholar.livedatabus.SubscriberIndex;\n"
+                    + "import com.scholar.livedatabus.liveevent.LiveEventObserver;\n"
+                    + "import com.scholar.livedatabus.liveevent.ThreadMode;\n\n"
+                    + "import java.util.HashMap;\n"
+                    + "import java.util.Map;\n\n"
+                    + "/**\n"
+                    + " * 由liveeventbuscompiler生成，不要修改\n"
+                    + " */\n"
+                    + "@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n"
+                    + "public final class " + simpleName + " implements SubscriberIndex {\n");
+            writer.write(constants.toString());
+            writer.write("    private static final Map<Class<?>, SubscriberBinder<?>> BINDERS = new HashMap<>();\n\n"
+                    + "    static {\n");
+            writer.write(binders.toString());
+            writer.write("    }\n\n"
+                    + "    @Override\n"
+                    + "    public SubscriberBinder<?> getBinder(Class<?> targetClass) {\n"
+                    + "        return BINDERS.get(targetClass);\n"
+                    + "    }\n"
+                    + "}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void appendObserve(StringBuilder out, ExecutableElement method, Map<String, String> keyConstants,
+                               StringBuilder constants) {
+        Subscribe subscribe = method.getAnnotation(Subscribe.class);
+        TypeMirror parameter = method.getParameters().get(0).asType();
+        boolean primitive = parameter.getKind().isPrimitive();
+        String eventType = primitive
+                ? processingEnv.getTypeUtils().boxedClass((PrimitiveType) parameter).getQualifiedName().toString()
+                : typeName(parameter);
+        String literal = stringLiteral(subscribe.key());
+        String constantKey = literal + "|" + eventType;
+        String constant = keyConstants.get(constantKey);
+        if (constant == null) {
+            constant = "KEY_" + keyConstants.size();
+            keyConstants.put(constantKey, constant);
+            constants.append("    private static final EventKey<").append(eventType).append("> ").append(constant)
+                    .append(" = EventKey.of(").append(literal).append(", ").append(eventType).append(".class);\n");
+        }
+        boolean consumes = method.getReturnType().getKind() == TypeKind.BOOLEAN;
+        String call = "target." + method.getSimpleName() + "(value)";
+
+        out.append("                bus.with(").append(constant).append(")")
+                .append(subscribe.sticky() ? ".observeSticky(" : ".observe(")
+                .append("owner, new LiveEventObserver<").append(eventType).append(">() {\n")
+                .append("                    @Override\n")
+                .append("                    public boolean onChanged(").append(eventType).append(" value) {\n");
+        if (primitive) {
+            out.append("                        if (value == null) {\n")
+                    .append("                            return false;\n")
+                    .append("                        }\n");
+        }
+        if (consumes) {
+            out.append("                        return ").append(call).append(";\n");
+        } else {
+            out.append("                        ").append(call).append(";\n")
+                    .append("                        return false;\n");
+        }
+        out.append("                    }\n")
+                .append("                }, ").append(subscribe.priority())
+                .append(", ThreadMode.").append(subscribe.threadMode().name()).append(");\n");
+    }
+
+    /**
+     * 擦除泛型后的类型名，内部类使用外部类.内部类的形式
+     */
+    private String typeName(TypeMirror type) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        if (erased instanceof DeclaredType) {
+            return ((TypeElement) ((DeclaredType) erased).asElement()).getQualifiedName().toString();
+        }
+        return erased.toString();
+    }
+
+    private static String stringLiteral(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    builder.append('\\').append(c);
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                default:
+                    builder.append(c);
+                    break;
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
@@ -0,0 +1,33 @@
+package com.scholar.livedatabus;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 事件的序列化方式，用于持久化、跨进程等需要把事件移出堆的场景，通过{@link LiveEventBus#setCodec(Object, EventCodec)}按key注册。
+ * <p>
+ * 直接读写调用方提供的ByteBuffer，通常就是内存映射的文件，中间不产生字节数组。
+ * buffer的字节序由调用方决定，编解码两端在同一台设备上，不需要关心。
+ * 常用类型见{@link EventCodecs}，自定义的记录见{@link RecordCodec}
+ *
+ * @param <T> 事件类型
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public interface EventCodec<T> {
+
+    /**
+     * 从buffer的position开始写入value，写完后position位于末尾。
+     * 空间不足时抛出{@link java.nio.BufferOverflowException}，调用方扩大空间后从原来的位置重新编码，
+     * 所以编码不能有其他副作用
+     */
+    void encode(@Nullable T value, @NonNull ByteBuffer buffer);
+
+    /**
+     * 读取buffer从position到limit的内容，buffer可能是内存映射的文件，返回之后不能再引用
+     */
+    @Nullable
+    T decode(@NonNull ByteBuffer buffer);
+}
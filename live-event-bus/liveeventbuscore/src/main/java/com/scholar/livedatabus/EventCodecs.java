@@ -0,0 +1,238 @@
+package com.scholar.livedatabus;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 内置的{@link EventCodec}。基本类型和String按定长或UTF-8直接写入，null编码为空内容
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public final class EventCodecs {
+
+    public static final EventCodec<Boolean> BOOLEAN = new EventCodec<Boolean>() {
+        @Override
+        public void encode(@Nullable Boolean value, @NonNull ByteBuffer buffer) {
+            if (value != null) {
+                buffer.put(value ? (byte) 1 : (byte) 0);
+            }
+        }
+
+        @Nullable
+        @Override
+        public Boolean decode(@NonNull ByteBuffer buffer) {
+            return buffer.hasRemaining() ? buffer.get() != 0 : null;
+        }
+    };
+
+    public static final EventCodec<Integer> INT = new EventCodec<Integer>() {
+        @Override
+        public void encode(@Nullable Integer value, @NonNull ByteBuffer buffer) {
+            if (value != null) {
+                buffer.putInt(value);
+            }
+        }
+
+        @Nullable
+        @Override
+        public Integer decode(@NonNull ByteBuffer buffer) {
+            return buffer.hasRemaining() ? buffer.getInt() : null;
+        }
+    };
+
+    public static final EventCodec<Long> LONG = new EventCodec<Long>() {
+        @Override
+        public void encode(@Nullable Long value, @NonNull ByteBuffer buffer) {
+            if (value != null) {
+                buffer.putLong(value);
+            }
+        }
+
+        @Nullable
+        @Override
+        public Long decode(@NonNull ByteBuffer buffer) {
+            return buffer.hasRemaining() ? buffer.getLong() : null;
+        }
+    };
+
+    public static final EventCodec<Float> FLOAT = new EventCodec<Float>() {
+        @Override
+        public void encode(@Nullable Float value, @NonNull ByteBuffer buffer) {
+            if (value != null) {
+                buffer.putFloat(value);
+            }
+        }
+
+        @Nullable
+        @Override
+        public Float decode(@NonNull ByteBuffer buffer) {
+            return buffer.hasRemaining() ? buffer.getFloat() : null;
+        }
+    };
+
+    public static final EventCodec<Double> DOUBLE = new EventCodec<Double>() {
+        @Override
+        public void encode(@Nullable Double value, @NonNull ByteBuffer buffer) {
+            if (value != null) {
+                buffer.putDouble(value);
+            }
+        }
+
+        @Nullable
+        @Override
+        public Double decode(@NonNull ByteBuffer buffer) {
+            return buffer.hasRemaining() ? buffer.getDouble() : null;
+        }
+    };
+
+    /**
+     * UTF-8，逐个字符写入buffer，不经过String.getBytes；前面多写一个字节，用来区分null和空字符串
+     */
+    public static final EventCodec<String> STRING = new EventCodec<String>() {
+        @Override
+        public void encode(@Nullable String value, @NonNull ByteBuffer buffer) {
+            if (value != null) {
+                buffer.put((byte) 0);
+                putUtf8(buffer, value);
+            }
+        }
+
+        @Nullable
+        @Override
+        public String decode(@NonNull ByteBuffer buffer) {
+            if (!buffer.hasRemaining()) {
+                return null;
+            }
+            buffer.get();
+            return getUtf8(buffer);
+        }
+    };
+
+    /**
+     * Java序列化，事件需要实现{@link java.io.Serializable}，对象流直接读写buffer
+     */
+    public static final EventCodec<Object> SERIALIZABLE = new EventCodec<Object>() {
+        @Override
+        public void encode(@Nullable Object value, @NonNull ByteBuffer buffer) {
+            try {
+                ObjectOutputStream output = new ObjectOutputStream(new ByteBufferOutputStream(buffer));
+                output.writeObject(value);
+                output.close();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot serialize " + value, e);
+            }
+        }
+
+        @Nullable
+        @Override
+        public Object decode(@NonNull ByteBuffer buffer) {
+            try {
+                return new ObjectInputStream(new ByteBufferInputStream(buffer)).readObject();
+            } catch (IOException | ClassNotFoundException e) {
+                throw new IllegalArgumentException("Cannot deserialize event", e);
+            }
+        }
+    };
+
+    private EventCodecs() {
+    }
+
+    /**
+     * 按UTF-8写入，不成对的代理字符写成'?'，和String.getBytes一致
+     */
+    static void putUtf8(@NonNull ByteBuffer buffer, @NonNull String value) {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                buffer.put((byte) (0xE0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+            } else {
+                buffer.put((byte) '?');
+            }
+        }
+    }
+
+    /**
+     * 读取buffer剩余的所有字节
+     */
+    @NonNull
+    static String getUtf8(@NonNull ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining(), SharedMemoryRing.UTF_8);
+            buffer.position(buffer.limit());
+            return value;
+        }
+        return SharedMemoryRing.UTF_8.decode(buffer).toString();
+    }
+
+    private static class ByteBufferOutputStream extends OutputStream {
+        private final ByteBuffer mBuffer;
+
+        ByteBufferOutputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            mBuffer.put((byte) b);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) {
+            mBuffer.put(b, off, len);
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer mBuffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!mBuffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, mBuffer.remaining());
+            mBuffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.scholar.livedatabus;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 带类型的事件key，创建时分配一个从0开始连续递增的id，总线按id直接索引数组查找事件，不需要计算hash。
+ * <p>
+ * 同名的key只分配一个id，和{@link LiveEventBus#with(Object)}使用同名的普通key时订阅和发布的是同一个事件。
+ * key记录事件类型，同名的key使用不同的类型时抛出IllegalArgumentException，Object.class可以和任何类型共用。
+ * 建议声明为常量：
+ * <pre class="prettyprint">
+ * public static final EventKey&lt;String&gt; LOGIN = EventKey.of("login", String.class);
+ * </pre>
+ * EventKey创建后不会释放，key的集合应当是有限的；拼接出来的动态key直接使用{@link LiveEventBus#with(Object)}，
+ * 它不经过EventKey，不再使用时可以被回收
+ *
+ * @param <T> 事件类型
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public final class EventKey<T> {
+
+    private static final ConcurrentMap<Object, EventKey<?>> sKeys = new ConcurrentHashMap<>();
+    //由sKeys的锁保护
+    private static int sNextId;
+
+    private final int mId;
+    @NonNull
+    private final Object mName;
+    @NonNull
+    private final Class<T> mType;
+
+    private EventKey(int id, @NonNull Object name, @NonNull Class<T> type) {
+        mId = id;
+        mName = name;
+        mType = type;
+    }
+
+    /**
+     * 获取或创建名为name的key
+     *
+     * @param name 名称，和{@link LiveEventBus#with(Object)}的key相同时指向同一个事件
+     * @param type 事件类型，同名的key必须使用相同的类型，或者其中一个是Object.class
+     * @throws IllegalArgumentException 同名的key已经使用了其他类型
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public static <T> EventKey<T> of(@NonNull Object name, @NonNull Class<T> type) {
+        EventKey<?> key = sKeys.get(name);
+        if (key != null && key.mType == type) {
+            return (EventKey<T>) key;
+        }
+        //加锁创建，保证id连续，不会因为竞争失败跳号
+        synchronized (sKeys) {
+            key = sKeys.get(name);
+            if (key == null) {
+                key = new EventKey<>(sNextId++, name, type);
+                sKeys.put(name, key);
+            } else if (key.mType != type) {
+                if (type == Object.class) {
+                    return new EventKey<>(key.mId, name, type);
+                }
+                if (key.mType != Object.class) {
+                    throw new IllegalArgumentException("Key " + name + " is already used with type "
+                            + key.mType.getName() + ", not " + type.getName());
+                }
+                //之前只以Object使用过，之后按具体类型检查
+                key = new EventKey<>(key.mId, name, type);
+                sKeys.put(name, key);
+            }
+            return (EventKey<T>) key;
+        }
+    }
+
+    public int getId() {
+        return mId;
+    }
+
+    @NonNull
+    public Object getName() {
+        return mName;
+    }
+
+    @NonNull
+    public Class<T> getType() {
+        return mType;
+    }
+
+    @Override
+    public String toString() {
+        return "EventKey{" + mName + "#" + mId + "}";
+    }
+}
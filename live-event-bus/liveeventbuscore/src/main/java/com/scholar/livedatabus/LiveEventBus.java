@@ -0,0 +1,1306 @@
+package com.scholar.livedatabus;
+
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleOwner;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.scholar.livedatabus.liveevent.BooleanLiveEvent;
+import com.scholar.livedatabus.liveevent.DispatchStatistics;
+import com.scholar.livedatabus.liveevent.DispatchTracer;
+import com.scholar.livedatabus.liveevent.Dispatcher;
+import com.scholar.livedatabus.liveevent.Dispatchers;
+import com.scholar.livedatabus.liveevent.DoubleLiveEvent;
+import com.scholar.livedatabus.liveevent.EventFunction;
+import com.scholar.livedatabus.liveevent.EventPredicate;
+import com.scholar.livedatabus.liveevent.ExecutorDispatcher;
+import com.scholar.livedatabus.liveevent.IntLiveEvent;
+import com.scholar.livedatabus.liveevent.LiveEvent;
+import com.scholar.livedatabus.liveevent.LiveEventObserver;
+import com.scholar.livedatabus.liveevent.LongLiveEvent;
+import com.scholar.livedatabus.liveevent.PostBudget;
+import com.scholar.livedatabus.liveevent.PrimitiveLiveEvent;
+import com.scholar.livedatabus.liveevent.RateLimitedLiveEvent;
+import com.scholar.livedatabus.liveevent.SlowObserverWatchdog;
+import com.scholar.livedatabus.liveevent.ThreadMode;
+import com.scholar.livedatabus.liveevent.TransformedLiveEvent;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Created by hailiangliao on 2018/7/4.
+ */
+
+public final class LiveEventBus {
+
+    //按EventKey的id索引，扩容时在channelLock下整体替换，查找无锁无hash
+    private volatile AtomicReferenceArray<ChannelRef> channels;
+    //所有通道按名称索引，with(Object)的动态key只在这里，不分配EventKey的id；写入在channelLock下
+    private final ConcurrentMap<Object, ChannelRef> namedChannels;
+    private final Object channelLock = new Object();
+    //被回收的通道的引用，在channelLock下清理
+    private final ReferenceQueue<BusLiveEvent<Object>> collectedChannels = new ReferenceQueue<>();
+    //基本类型事件和普通事件使用各自的key空间
+    private final ConcurrentMap<Object, PrimitiveLiveEvent<?>> primitiveBus;
+    //通配符订阅按模式创建，有观察者的模式才加入前缀树，前缀树只在分发线程上访问
+    private final ConcurrentMap<String, TopicLiveEvent<Object>> topics;
+    private final TopicTrie<TopicLiveEvent<Object>> topicTrie;
+    //按事件类型分发的通道，和with()的key互不影响；每个具体类型匹配到的通道缓存起来，新建通道时版本号加一使缓存失效
+    private final ConcurrentMap<Class<?>, TypeLiveEvent<Object>> typeChannels;
+    private final ConcurrentMap<Class<?>, ResolvedTypeChannels> resolvedTypeChannels;
+    private final AtomicInteger typeChannelsVersion = new AtomicInteger();
+    @Nullable
+    volatile StickyStore stickyStore;
+    //with()得到的所有事件共享的postValue预算，由channelLock保护写入
+    private volatile PostBudget postBudget;
+    //按key注册的发布监听，用于跨进程转发等，写时复制
+    private final ConcurrentMap<Object, PublishListener[]> publishListeners;
+    private final ConcurrentMap<Object, EventCodec<?>> codecs;
+    @Nullable
+    private final Dispatcher dispatcher;
+
+    //没有观察者、只保留粘性值的key，按最近一次发布或失去观察者的顺序排列，最老的在前
+    private final Object stickyLock = new Object();
+    private final LinkedHashMap<Object, BusLiveEvent<Object>> idleEntries;
+    private long idleWeight;
+    private long lastExpireScanNanos;
+    private final Set<Object> pinnedKeys;
+    //恢复持久化的值之后在分发线程上淘汰
+    private final Runnable trimTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (stickyLock) {
+                trimLocked();
+            }
+        }
+    };
+    private volatile long stickyTtlNanos;
+    private volatile long stickyMaxWeight = Long.MAX_VALUE;
+    private volatile Weigher weigher = COUNTING_WEIGHER;
+
+    //编译期生成的订阅索引，注册器按订阅者的类缓存
+    private static final CopyOnWriteArrayList<SubscriberIndex> indexes = new CopyOnWriteArrayList<>();
+    private static final ConcurrentMap<Class<?>, SubscriberBinder<?>> binders = new ConcurrentHashMap<>();
+
+    private static final int INITIAL_CHANNEL_CAPACITY = 64;
+    private static final Weigher COUNTING_WEIGHER = new Weigher() {
+        @Override
+        public long weigh(@NonNull Object key, @Nullable Object value) {
+            return 1;
+        }
+    };
+
+    private LiveEventBus(@Nullable Dispatcher dispatcher) {
+        channels = new AtomicReferenceArray<>(INITIAL_CHANNEL_CAPACITY);
+        namedChannels = new ConcurrentHashMap<>();
+        primitiveBus = new ConcurrentHashMap<>();
+        topics = new ConcurrentHashMap<>();
+        topicTrie = new TopicTrie<>();
+        typeChannels = new ConcurrentHashMap<>();
+        publishListeners = new ConcurrentHashMap<>();
+        codecs = new ConcurrentHashMap<>();
+        resolvedTypeChannels = new ConcurrentHashMap<>();
+        idleEntries = new LinkedHashMap<>(16, 0.75f, true);
+        pinnedKeys = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * @return 默认的总线，事件在{@link Dispatchers#getDefault()}上分发，Android上即主线程
+     */
+    public static LiveEventBus get() {
+        return SingletonHolder.DEFAULT_BUS;
+    }
+
+    /**
+     * 创建一个独立的总线，所有事件都在给定的Dispatcher上分发，例如在普通JVM上使用{@link ExecutorDispatcher}
+     *
+     * @param dispatcher 分发线程
+     * @return 新的总线
+     */
+    public static LiveEventBus create(@NonNull Dispatcher dispatcher) {
+        return new LiveEventBus(dispatcher);
+    }
+
+    /**
+     * 按id直接读取数组，已存在的事件无锁无hash；不存在时加锁创建，保证所有线程拿到同一个实例
+     *
+     * @throws IllegalArgumentException 同名的事件已经以其他类型使用
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Observable<T> with(@NonNull EventKey<T> key) {
+        int id = key.getId();
+        AtomicReferenceArray<ChannelRef> array = channels;
+        if (id < array.length()) {
+            ChannelRef ref = array.get(id);
+            BusLiveEvent<Object> liveEvent = ref != null ? ref.get() : null;
+            if (liveEvent != null && isTypeOf(liveEvent, key.getType())) {
+                return (Observable<T>) liveEvent;
+            }
+        }
+        return (Observable<T>) createChannel(key.getName(), key.getType(), id);
+    }
+
+    /**
+     * 和同名的{@link EventKey}指向同一个事件，但不创建EventKey：拼接出来的动态key不再使用之后可以被回收。
+     * 事件第一次以Object以外的类型使用时确定类型，之后以其他类型使用时抛出IllegalArgumentException，Object.class总是可以使用
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Observable<T> with(Object key, Class<T> type) {
+        ChannelRef ref = namedChannels.get(key);
+        BusLiveEvent<Object> liveEvent = ref != null ? ref.get() : null;
+        if (liveEvent != null && isTypeOf(liveEvent, type)) {
+            return (Observable<T>) liveEvent;
+        }
+        return (Observable<T>) createChannel(key, type, ChannelRef.NO_ID);
+    }
+
+    public Observable<Object> with(Object key) {
+        return with(key, Object.class);
+    }
+
+    private static boolean isTypeOf(BusLiveEvent<Object> liveEvent, Class<?> type) {
+        return type == Object.class || liveEvent.mType == type;
+    }
+
+    /**
+     * 查找或创建名为name的通道，检查类型；id不是NO_ID时同时放入数组
+     */
+    private BusLiveEvent<Object> createChannel(Object name, Class<?> type, int id) {
+        //持久化的粘性值在第一次with()时才读取，扫描日志和解码都不持有channelLock
+        ChannelRef existing = namedChannels.get(name);
+        StickyStore.Record persisted = existing == null || existing.get() == null ? readPersisted(name) : null;
+        synchronized (channelLock) {
+            expungeCollectedLocked();
+            ChannelRef ref = namedChannels.get(name);
+            BusLiveEvent<Object> liveEvent = ref != null ? ref.get() : null;
+            if (liveEvent != null) {
+                if (type != Object.class) {
+                    if (liveEvent.mType == Object.class) {
+                        liveEvent.mType = type;
+                    } else if (liveEvent.mType != type) {
+                        throw new IllegalArgumentException("Key " + name + " is already used with type "
+                                + liveEvent.mType.getName() + ", not " + type.getName());
+                    }
+                }
+            } else {
+                liveEvent = new BusLiveEvent<>(this, name, type, dispatcher, collectedChannels);
+                liveEvent.setSharedPostBudget(postBudget);
+                if (persisted != null) {
+                    liveEvent.restoreValue(persisted);
+                    //恢复的值和其他粘性值一样受存活时间和总权重的约束。这里不在分发线程上，只加入LRU，
+                    //淘汰会释放其他key的值和强引用，交给分发线程，避免和那里的retain、clearValue交错
+                    retain(liveEvent);
+                    if (!pinnedKeys.contains(name)) {
+                        synchronized (stickyLock) {
+                            putIdleLocked(liveEvent);
+                        }
+                        dispatcher().post(trimTask);
+                    }
+                }
+                namedChannels.put(name, liveEvent.mRef);
+            }
+            if (id != ChannelRef.NO_ID) {
+                liveEvent.mRef.mId = id;
+                ensureCapacityLocked(id).set(id, liveEvent.mRef);
+            }
+            return liveEvent;
+        }
+    }
+
+    /**
+     * 读取持久化的粘性值，已经超过存活时间的不恢复，并在日志中写入墓碑
+     */
+    @Nullable
+    private StickyStore.Record readPersisted(Object name) {
+        StickyStore store = stickyStore;
+        StickyStore.Record record = store != null ? store.read(name) : null;
+        if (record != null) {
+            long ttl = stickyTtlNanos;
+            if (ttl > 0 && record.mAgeNanos > ttl && !pinnedKeys.contains(name)) {
+                store.remove(name);
+                return null;
+            }
+        }
+        return record;
+    }
+
+    /**
+     * 清掉已经被回收的通道留下的槽位
+     */
+    private void expungeCollectedLocked() {
+        Reference<? extends BusLiveEvent<Object>> collected;
+        while ((collected = collectedChannels.poll()) != null) {
+            ChannelRef ref = (ChannelRef) collected;
+            namedChannels.remove(ref.mName, ref);
+            AtomicReferenceArray<ChannelRef> array = channels;
+            if (ref.mId != ChannelRef.NO_ID && ref.mId < array.length()) {
+                array.compareAndSet(ref.mId, ref, null);
+            }
+        }
+    }
+
+    private AtomicReferenceArray<ChannelRef> ensureCapacityLocked(int id) {
+        AtomicReferenceArray<ChannelRef> array = channels;
+        if (id < array.length()) {
+            return array;
+        }
+        int capacity = array.length();
+        while (capacity <= id) {
+            capacity <<= 1;
+        }
+        AtomicReferenceArray<ChannelRef> grown = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < array.length(); i++) {
+            grown.set(i, array.get(i));
+        }
+        channels = grown;
+        return grown;
+    }
+
+    /**
+     * 订阅一组主题。主题是用"."分层的字符串key，{@code *}匹配一层，{@code #}在最后匹配零层或多层，
+     * 例如{@code download.*.progress}或{@code download.#}。
+     * 通过{@link #with(Object)}发布到匹配的字符串key的事件，在分发给该key的观察者之后再分发给这里的观察者。
+     * <p>
+     * 发布时按主题的层数在前缀树中查找匹配的订阅，结果按key缓存，订阅变化时重新查找
+     *
+     * @param pattern 主题，可以包含通配符
+     * @throws IllegalArgumentException 主题格式不正确
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Observable<T> withTopic(@NonNull String pattern, Class<T> type) {
+        TopicLiveEvent<Object> liveEvent = topics.get(pattern);
+        if (liveEvent == null) {
+            TopicTrie.parsePattern(pattern);
+            TopicLiveEvent<Object> created = new TopicLiveEvent<>(this, pattern, dispatcher);
+            liveEvent = topics.putIfAbsent(pattern, created);
+            if (liveEvent == null) {
+                liveEvent = created;
+            }
+        }
+        return (Observable<T>) liveEvent;
+    }
+
+    public Observable<Object> withTopic(@NonNull String pattern) {
+        return withTopic(pattern, Object.class);
+    }
+
+    /**
+     * 在分发线程上注册或移除通配符观察者之后调用
+     */
+    private void onTopicObserversChanged(TopicLiveEvent<Object> topic) {
+        boolean subscribed = topic.hasObservers();
+        if (subscribed != topic.mSubscribed) {
+            topic.mSubscribed = subscribed;
+            if (subscribed) {
+                topicTrie.add(topic.mPattern, topic);
+            } else {
+                topicTrie.remove(topic.mPattern, topic);
+            }
+        }
+    }
+
+    /**
+     * 按类型订阅事件，通过{@link #setEvent(Object)}/{@link #postEvent(Object)}发布的事件，
+     * 只要是type或其子类、实现类的实例都会分发给这里的观察者。和{@link #with(Object)}的key是独立的
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Observable<T> withType(@NonNull Class<T> type) {
+        TypeLiveEvent<Object> liveEvent = typeChannels.get(type);
+        if (liveEvent == null) {
+            TypeLiveEvent<Object> created = new TypeLiveEvent<>(type, dispatcher);
+            liveEvent = typeChannels.putIfAbsent(type, created);
+            if (liveEvent == null) {
+                liveEvent = created;
+                typeChannelsVersion.incrementAndGet();
+            }
+        }
+        return (Observable<T>) liveEvent;
+    }
+
+    /**
+     * 按事件的类型发布，依次分发给事件的类、父类和接口对应的{@link #withType(Class)}通道，子类型在前。
+     * 每个具体类型第一次发布时遍历继承关系，之后直接使用缓存的通道列表
+     */
+    @MainThread
+    public void setEvent(@NonNull Object event) {
+        List<TypeLiveEvent<Object>> channels = resolveTypeChannels(event.getClass());
+        for (int i = 0; i < channels.size(); i++) {
+            channels.get(i).setValue(event);
+        }
+    }
+
+    /**
+     * 在任意线程调用，在分发线程上执行{@link #setEvent(Object)}
+     */
+    public void postEvent(@NonNull final Object event) {
+        dispatcher().post(new Runnable() {
+            @Override
+            public void run() {
+                setEvent(event);
+            }
+        });
+    }
+
+    @NonNull
+    Dispatcher dispatcher() {
+        return dispatcher != null ? dispatcher : Dispatchers.getDefault();
+    }
+
+    /**
+     * 在分发线程上通过{@link #with(Object)}的key发布事件之后回调，包括postValue。
+     * 失败时自己处理，不要抛出异常，否则同一个key的其他监听和主题订阅收不到这个值
+     */
+    interface PublishListener {
+        void onPublished(@NonNull Object key, @Nullable Object value);
+    }
+
+    void addPublishListener(@NonNull Object key, @NonNull PublishListener listener) {
+        synchronized (publishListeners) {
+            PublishListener[] listeners = publishListeners.get(key);
+            int size = listeners == null ? 0 : listeners.length;
+            PublishListener[] updated = new PublishListener[size + 1];
+            if (listeners != null) {
+                System.arraycopy(listeners, 0, updated, 0, size);
+            }
+            updated[size] = listener;
+            publishListeners.put(key, updated);
+        }
+    }
+
+    void removePublishListener(@NonNull Object key, @NonNull PublishListener listener) {
+        synchronized (publishListeners) {
+            PublishListener[] listeners = publishListeners.get(key);
+            if (listeners == null) {
+                return;
+            }
+            ArrayList<PublishListener> updated = new ArrayList<>(listeners.length);
+            for (PublishListener registered : listeners) {
+                if (registered != listener) {
+                    updated.add(registered);
+                }
+            }
+            if (updated.isEmpty()) {
+                publishListeners.remove(key);
+            } else {
+                publishListeners.put(key, updated.toArray(new PublishListener[updated.size()]));
+            }
+        }
+    }
+
+    /**
+     * 注册key的序列化方式，{@link StickyStore}和{@link SharedMemoryTransport}用它读写这个key的事件，传null取消注册
+     */
+    public <T> void setCodec(@NonNull EventKey<T> key, @Nullable EventCodec<? super T> codec) {
+        setCodec(key.getName(), codec);
+    }
+
+    public void setCodec(@NonNull Object key, @Nullable EventCodec<?> codec) {
+        if (codec == null) {
+            codecs.remove(key);
+        } else {
+            codecs.put(key, codec);
+        }
+    }
+
+    @Nullable
+    public EventCodec<?> getCodec(@NonNull Object key) {
+        return codecs.get(key);
+    }
+
+    /**
+     * @throws IllegalStateException key没有注册序列化方式
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    EventCodec<Object> requireCodec(@NonNull Object key) {
+        EventCodec<?> codec = codecs.get(key);
+        if (codec == null) {
+            throw new IllegalStateException("No EventCodec registered for key " + key
+                    + ", call LiveEventBus.setCodec first");
+        }
+        return (EventCodec<Object>) codec;
+    }
+
+    private List<TypeLiveEvent<Object>> resolveTypeChannels(Class<?> eventClass) {
+        //先读版本号，解析期间新建的通道会让下一次发布重新解析
+        int version = typeChannelsVersion.get();
+        ResolvedTypeChannels resolved = resolvedTypeChannels.get(eventClass);
+        if (resolved == null || resolved.mVersion != version) {
+            ArrayList<TypeLiveEvent<Object>> channels = new ArrayList<>();
+            for (Class<?> type : typeHierarchy(eventClass)) {
+                TypeLiveEvent<Object> channel = typeChannels.get(type);
+                if (channel != null) {
+                    channels.add(channel);
+                }
+            }
+            resolved = new ResolvedTypeChannels(version, channels);
+            resolvedTypeChannels.put(eventClass, resolved);
+        }
+        return resolved.mChannels;
+    }
+
+    /**
+     * @return 类自身、所有父类和接口，子类型在前
+     */
+    private static LinkedHashSet<Class<?>> typeHierarchy(Class<?> eventClass) {
+        LinkedHashSet<Class<?>> types = new LinkedHashSet<>();
+        for (Class<?> clazz = eventClass; clazz != null; clazz = clazz.getSuperclass()) {
+            types.add(clazz);
+        }
+        ArrayList<Class<?>> pending = new ArrayList<>(types);
+        for (int i = 0; i < pending.size(); i++) {
+            for (Class<?> anInterface : pending.get(i).getInterfaces()) {
+                if (types.add(anInterface)) {
+                    pending.add(anInterface);
+                }
+            }
+        }
+        return types;
+    }
+
+    /**
+     * int类型的事件，发布和分发都不装箱
+     */
+    public IntLiveEvent withInt(Object key) {
+        return withPrimitive(key, IntLiveEvent.class);
+    }
+
+    /**
+     * long类型的事件，发布和分发都不装箱
+     */
+    public LongLiveEvent withLong(Object key) {
+        return withPrimitive(key, LongLiveEvent.class);
+    }
+
+    /**
+     * double类型的事件，发布和分发都不装箱
+     */
+    public DoubleLiveEvent withDouble(Object key) {
+        return withPrimitive(key, DoubleLiveEvent.class);
+    }
+
+    /**
+     * boolean类型的事件，发布和分发都不装箱
+     */
+    public BooleanLiveEvent withBoolean(Object key) {
+        return withPrimitive(key, BooleanLiveEvent.class);
+    }
+
+    private <E extends PrimitiveLiveEvent<?>> E withPrimitive(Object key, Class<E> type) {
+        PrimitiveLiveEvent<?> liveEvent = primitiveBus.get(key);
+        if (liveEvent == null) {
+            PrimitiveLiveEvent<?> created = newPrimitiveLiveEvent(key, type);
+            liveEvent = primitiveBus.putIfAbsent(key, created);
+            if (liveEvent == null) {
+                liveEvent = created;
+            }
+        }
+        if (liveEvent.getClass() != type) {
+            throw new IllegalArgumentException("Key " + key + " is already used by "
+                    + liveEvent.getClass().getSimpleName());
+        }
+        return type.cast(liveEvent);
+    }
+
+    private PrimitiveLiveEvent<?> newPrimitiveLiveEvent(Object key, Class<?> type) {
+        if (type == IntLiveEvent.class) {
+            return new IntLiveEvent(key, dispatcher);
+        } else if (type == LongLiveEvent.class) {
+            return new LongLiveEvent(key, dispatcher);
+        } else if (type == DoubleLiveEvent.class) {
+            return new DoubleLiveEvent(key, dispatcher);
+        }
+        return new BooleanLiveEvent(key, dispatcher);
+    }
+
+    /**
+     * 安装注解处理器生成的订阅索引，每个使用了{@link Subscribe}的模块生成一个，在Application中安装
+     */
+    public static void addIndex(@NonNull SubscriberIndex index) {
+        indexes.add(index);
+    }
+
+    /**
+     * 注册target中所有{@link Subscribe}方法，观察者绑定owner的生命周期，销毁时自动移除。
+     * 注册代码在编译期生成，运行时不使用反射
+     *
+     * @throws IllegalArgumentException 已安装的索引中没有target的类或父类
+     */
+    @MainThread
+    public void register(@NonNull LifecycleOwner owner, @NonNull Object target) {
+        SubscriberBinder<Object> binder = findBinder(target.getClass());
+        if (binder == null) {
+            throw new IllegalArgumentException(target.getClass().getName() + " has no @Subscribe methods"
+                    + " in the installed indexes, call LiveEventBus.addIndex() with the generated index");
+        }
+        binder.bind(this, owner, target);
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static SubscriberBinder<Object> findBinder(Class<?> targetClass) {
+        SubscriberBinder<?> binder = binders.get(targetClass);
+        if (binder == null) {
+            //没有注解的子类使用最近的父类的注册器，生成的注册器已经包含了继承的方法
+            for (Class<?> clazz = targetClass; clazz != null && binder == null; clazz = clazz.getSuperclass()) {
+                for (SubscriberIndex index : indexes) {
+                    binder = index.getBinder(clazz);
+                    if (binder != null) {
+                        break;
+                    }
+                }
+            }
+            if (binder != null) {
+                binders.put(targetClass, binder);
+            }
+        }
+        return (SubscriberBinder<Object>) binder;
+    }
+
+    /**
+     * 安装分发追踪器，例如{@link DispatchStatistics}，传null卸载
+     */
+    public void setDispatchTracer(@Nullable DispatchTracer tracer) {
+        LiveEvent.setDispatchTracer(tracer);
+    }
+
+    /**
+     * 限制with()得到的所有事件已经post、还没有执行的postValue任务总数，和每个key自己的预算同时生效，见{@link PostBudget}。
+     * 应当在使用总线之前调用，有未执行的任务时抛出IllegalStateException
+     *
+     * @param budget 共享的预算，传null不限制
+     */
+    public void setPostBudget(@Nullable PostBudget budget) {
+        synchronized (channelLock) {
+            postBudget = budget;
+            for (ChannelRef ref : namedChannels.values()) {
+                BusLiveEvent<Object> liveEvent = ref.get();
+                if (liveEvent != null) {
+                    liveEvent.setSharedPostBudget(budget);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    public PostBudget getPostBudget() {
+        return postBudget;
+    }
+
+    /**
+     * 安装慢观察者看门狗，见{@link SlowObserverWatchdog}，传null卸载
+     */
+    public void setSlowObserverWatchdog(@Nullable SlowObserverWatchdog watchdog) {
+        LiveEvent.setSlowObserverWatchdog(watchdog);
+    }
+
+    /**
+     * 粘性值的存活时间。没有观察者的key在最后一次发布超过这个时间后被移除；
+     * 有观察者的key不会被移除，但过期的值不再分发给之后注册的粘性观察者。
+     * <p>
+     * 过期检查在分发线程上随发布和观察者变化进行，不额外占用定时器，所以过期的值会在下一次检查时才被释放。
+     * 只对之后发布的值计时：设置之前已经发布的值不会过期，直到这个key下一次发布，所以应在使用总线之前设置。
+     *
+     * @param ttl  存活时间，小于等于0表示永不过期（默认）
+     * @param unit 时间单位
+     */
+    public void setStickyTtl(long ttl, @NonNull TimeUnit unit) {
+        stickyTtlNanos = ttl > 0 ? unit.toNanos(ttl) : 0;
+    }
+
+    /**
+     * 限制没有观察者的key保留的粘性值的总权重，超出时按LRU移除最久没有发布的key。
+     *
+     * @param maxWeight 总权重上限，默认不限制
+     * @param weigher   计算每个值的权重，例如按字节数估算；传null时每个值计为1，即限制key的个数
+     */
+    public void setStickyMaxWeight(long maxWeight, @Nullable Weigher weigher) {
+        this.weigher = weigher != null ? weigher : COUNTING_WEIGHER;
+        stickyMaxWeight = maxWeight;
+    }
+
+    /**
+     * 让key的粘性值永久保留，不受{@link #setStickyTtl}和{@link #setStickyMaxWeight}的限制，
+     * 例如登录状态这类需要一直能被粘性观察者收到的事件
+     */
+    public void pinSticky(@NonNull Object key) {
+        pinnedKeys.add(key);
+        synchronized (stickyLock) {
+            BusLiveEvent<Object> entry = idleEntries.remove(key);
+            if (entry != null) {
+                idleWeight -= entry.mWeight;
+            }
+        }
+    }
+
+    /**
+     * 取消{@link #pinSticky(Object)}，之后的发布重新受淘汰策略约束
+     */
+    public void unpinSticky(@NonNull Object key) {
+        pinnedKeys.remove(key);
+    }
+
+    /**
+     * 计算粘性值占用的权重，在分发线程上调用（恢复持久化的值时在调用with()的线程上），
+     * 应当很快并且对同一个值返回相同的结果
+     */
+    public interface Weigher {
+        long weigh(@NonNull Object key, @Nullable Object value);
+    }
+
+    /**
+     * 在分发线程上，新的值分发给key自己的观察者之后调用
+     */
+    private void onPublished(BusLiveEvent<Object> entry, Object value) {
+        if (!publishListeners.isEmpty()) {
+            PublishListener[] listeners = publishListeners.get(entry.getKey());
+            if (listeners != null) {
+                for (PublishListener listener : listeners) {
+                    listener.onPublished(entry.getKey(), value);
+                }
+            }
+        }
+        if (!topicTrie.isEmpty() && entry.getKey() instanceof String) {
+            List<TopicLiveEvent<Object>> matched = topicTrie.match((String) entry.getKey());
+            for (int i = 0; i < matched.size(); i++) {
+                matched.get(i).setValue(value);
+            }
+        }
+        if (stickyTtlNanos > 0) {
+            entry.mPublishedNanos = System.nanoTime();
+        }
+        if (!entry.hasObservers()) {
+            onIdle(entry);
+        }
+    }
+
+    /**
+     * 在分发线程上注册或移除观察者之后调用
+     */
+    private void onObserversChanged(BusLiveEvent<Object> entry) {
+        if (entry.hasObservers()) {
+            retain(entry);
+            synchronized (stickyLock) {
+                BusLiveEvent<Object> removed = idleEntries.remove(entry.getKey());
+                if (removed != null) {
+                    idleWeight -= removed.mWeight;
+                }
+            }
+        } else {
+            onIdle(entry);
+        }
+    }
+
+    /**
+     * 没有观察者的key：没有值则不再强引用，有值则作为粘性值进入LRU
+     */
+    private void onIdle(BusLiveEvent<Object> entry) {
+        Object key = entry.getKey();
+        if (!entry.hasValue()) {
+            release(entry);
+            return;
+        }
+        retain(entry);
+        if (pinnedKeys.contains(key)) {
+            return;
+        }
+        synchronized (stickyLock) {
+            putIdleLocked(entry);
+            trimLocked();
+        }
+    }
+
+    private void putIdleLocked(BusLiveEvent<Object> entry) {
+        Object key = entry.getKey();
+        BusLiveEvent<Object> previous = idleEntries.put(key, entry);
+        if (previous != null) {
+            idleWeight -= previous.mWeight;
+        }
+        entry.mWeight = weigher.weigh(key, entry.getValue());
+        idleWeight += entry.mWeight;
+    }
+
+    /**
+     * 超出总权重时从最老的开始移除；设置了存活时间时，每隔半个存活时间完整扫描一遍过期的key，
+     * 其余时候只检查最老的一个，保证每次发布的开销是常数
+     */
+    private void trimLocked() {
+        long ttl = stickyTtlNanos;
+        long now = 0;
+        boolean fullScan = false;
+        if (ttl > 0) {
+            now = System.nanoTime();
+            fullScan = now - lastExpireScanNanos >= ttl / 2;
+            if (fullScan) {
+                lastExpireScanNanos = now;
+            }
+        }
+        long maxWeight = stickyMaxWeight;
+        Iterator<BusLiveEvent<Object>> iterator = idleEntries.values().iterator();
+        while (iterator.hasNext()) {
+            BusLiveEvent<Object> entry = iterator.next();
+            boolean expired = ttl > 0 && isExpired(entry, ttl, now);
+            if (!expired && idleWeight <= maxWeight) {
+                if (!fullScan) {
+                    break;
+                }
+                continue;
+            }
+            iterator.remove();
+            idleWeight -= entry.mWeight;
+            entry.releaseValue();
+            release(entry);
+        }
+    }
+
+    /**
+     * 值已超过存活时间则清除，在注册粘性观察者之前调用
+     */
+    private void expireIfStale(BusLiveEvent<Object> entry) {
+        long ttl = stickyTtlNanos;
+        if (ttl > 0 && entry.hasValue() && !pinnedKeys.contains(entry.getKey())
+                && isExpired(entry, ttl, System.nanoTime())) {
+            entry.releaseValue();
+        }
+    }
+
+    /**
+     * 设置存活时间之前发布、还没有记录发布时间的值不计时
+     */
+    private static boolean isExpired(BusLiveEvent<Object> entry, long ttl, long now) {
+        return entry.mPublishedNanos != 0 && now - entry.mPublishedNanos > ttl;
+    }
+
+    /**
+     * 有观察者或者保留着粘性值的通道由总线强引用
+     */
+    private static void retain(BusLiveEvent<Object> entry) {
+        entry.mRef.mRetained = entry;
+    }
+
+    /**
+     * 之后只剩弱引用：调用方仍然持有时，with()返回的还是同一个实例；都不再引用时被回收，槽位在下一次创建通道时清理。
+     * 同一个key不会同时存在两个实例
+     */
+    private static void release(BusLiveEvent<Object> entry) {
+        entry.mRef.mRetained = null;
+    }
+
+    /**
+     * 只能观察的事件：限流和转换视图只有观察和组合的方法，发布仍然通过原来的{@link Observable}
+     */
+    public interface ObservableView<T> {
+        void observe(@NonNull LifecycleOwner owner, @NonNull LiveEventObserver<T> observer);
+
+        void observe(@NonNull LifecycleOwner owner, @NonNull LiveEventObserver<T> observer, int priority);
+
+        void observe(@NonNull LifecycleOwner owner, @NonNull LiveEventObserver<T> observer, int priority,
+                     @NonNull ThreadMode threadMode);
+
+        void observeSticky(@NonNull LifecycleOwner owner, @NonNull LiveEventObserver<T> observer);
+
+        void observeSticky(@NonNull LifecycleOwner owner, @NonNull LiveEventObserver<T> observer, int priority);
+
+        void observeSticky(@NonNull LifecycleOwner owner, @NonNull LiveEventObserver<T> observer, int priority,
+                           @NonNull ThreadMode threadMode);
+
+        void observeForever(@NonNull LiveEventObserver<T> observer);
+
+        void observeForever(@NonNull LiveEventObserver<T> observer, int priority);
+
+        void observeForever(@NonNull LiveEventObserver<T> observer, int priority,
+                            @NonNull ThreadMode threadMode);
+
+        void observeStickyForever(@NonNull LiveEventObserver<T> observer);
+
+        void observeStickyForever(@NonNull LiveEventObserver<T> observer, int priority);
+
+        void observeStickyForever(@NonNull LiveEventObserver<T> observer, int priority,
+                                  @NonNull ThreadMode threadMode);
+
+        void observeForeverWeakly(@NonNull LiveEventObserver<T> observer);
+
+        void observeForeverWeakly(@NonNull LiveEventObserver<T> observer, int priority);
+
+        void observeForeverWeakly(@NonNull LiveEventObserver<T> observer, int priority,
+                                  @NonNull ThreadMode threadMode);
+
+        void observeStickyForeverWeakly(@NonNull LiveEventObserver<T> observer);
+
+        void observeStickyForeverWeakly(@NonNull LiveEventObserver<T> observer, int priority);
+
+        void observeStickyForeverWeakly(@NonNull LiveEventObserver<T> observer, int priority,
+                                        @NonNull ThreadMode threadMode);
+
+        void removeObserver(@NonNull LiveEventObserver<T> observer);
+
+        int getReapedObserverCount();
+
+        /**
+         * 以下返回限流视图，视图有观察者时才订阅这个ObservableView，见{@link RateLimitedLiveEvent}。
+         * 上游安静了timeout之后才发出最后一个值
+         */
+        @NonNull
+        ObservableView<T> debounce(long timeout, @NonNull TimeUnit unit);
+
+        /**
+         * 发出窗口内的第一个值
+         */
+        @NonNull
+        ObservableView<T> throttleFirst(long window, @NonNull TimeUnit unit);
+
+        /**
+         * 第一个值开启窗口，窗口结束时发出最后一个值
+         */
+        @NonNull
+        ObservableView<T> throttleLast(long window, @NonNull TimeUnit unit);
+
+        /**
+         * 每个周期结束时发出这个周期内的最后一个值
+         */
+        @NonNull
+        ObservableView<T> sample(long period, @NonNull TimeUnit unit);
+
+        /**
+         * 丢弃和上一次发出的值equals的值
+         */
+        @NonNull
+        ObservableView<T> distinctUntilChanged();
+
+        /**
+         * 以下返回转换视图，连续的转换融合成一个观察者，见{@link TransformedLiveEvent}
+         */
+        @NonNull
+        <R> ObservableView<R> map(@NonNull EventFunction<? super T, ? extends R> function);
+
+        @NonNull
+        ObservableView<T> filter(@NonNull EventPredicate<? super T> predicate);
+
+        /**
+         * function返回的ObservableView必须来自LiveEventBus，返回null时退订当前的
+         */
+        @NonNull
+        <R> ObservableView<R> switchMap(@NonNull EventFunction<? super T, ? extends ObservableView<R>> function);
+    }
+
+    public interface Observable<T> extends ObservableView<T> {
+        void setValue(T value);
+
+        void postValue(T value);
+
+        void setPostMode(@LiveEvent.PostMode int postMode);
+
+        void setEventQueue(int capacity, @LiveEvent.OverflowPolicy int overflowPolicy);
+
+        void setPostBudget(@Nullable PostBudget budget);
+
+        void resumeDispatch(T value);
+    }
+
+    /**
+     * 总线上各种通道的公共父类，实现{@link ObservableView}的限流和转换视图
+     */
+    private abstract static class ObservableLiveEvent<T> extends LiveEvent<T> implements Observable<T> {
+        ObservableLiveEvent(Object key, Dispatcher dispatcher) {
+            super(key, dispatcher);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> debounce(long timeout, @NonNull TimeUnit unit) {
+            return Views.debounce(this, timeout, unit);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> throttleFirst(long window, @NonNull TimeUnit unit) {
+            return Views.throttleFirst(this, window, unit);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> throttleLast(long window, @NonNull TimeUnit unit) {
+            return Views.throttleLast(this, window, unit);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> sample(long period, @NonNull TimeUnit unit) {
+            return Views.sample(this, period, unit);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> distinctUntilChanged() {
+            return Views.distinctUntilChanged(this);
+        }
+
+        @NonNull
+        @Override
+        public <R> ObservableView<R> map(@NonNull EventFunction<? super T, ? extends R> function) {
+            return Views.map(this, function);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> filter(@NonNull EventPredicate<? super T> predicate) {
+            return Views.filter(this, predicate);
+        }
+
+        @NonNull
+        @Override
+        public <R> ObservableView<R> switchMap(@NonNull EventFunction<? super T, ? extends ObservableView<R>> function) {
+            return Views.switchMap(this, function);
+        }
+    }
+
+    /**
+     * {@link ObservableView}的组合操作，三种实现（通道、限流视图、转换视图）都委托到这里，新增操作只需要改一处
+     */
+    private static final class Views {
+        private Views() {
+        }
+
+        @NonNull
+        static <T> ObservableView<T> debounce(LiveEvent<T> source, long timeout, TimeUnit unit) {
+            return new RateLimitedObservable<>(source, RateLimitedLiveEvent.OPERATOR_DEBOUNCE, timeout, unit);
+        }
+
+        @NonNull
+        static <T> ObservableView<T> throttleFirst(LiveEvent<T> source, long window, TimeUnit unit) {
+            return new RateLimitedObservable<>(source, RateLimitedLiveEvent.OPERATOR_THROTTLE_FIRST, window, unit);
+        }
+
+        @NonNull
+        static <T> ObservableView<T> throttleLast(LiveEvent<T> source, long window, TimeUnit unit) {
+            return new RateLimitedObservable<>(source, RateLimitedLiveEvent.OPERATOR_THROTTLE_LAST, window, unit);
+        }
+
+        @NonNull
+        static <T> ObservableView<T> sample(LiveEvent<T> source, long period, TimeUnit unit) {
+            return new RateLimitedObservable<>(source, RateLimitedLiveEvent.OPERATOR_SAMPLE, period, unit);
+        }
+
+        @NonNull
+        static <T> ObservableView<T> distinctUntilChanged(LiveEvent<T> source) {
+            return new RateLimitedObservable<>(source, RateLimitedLiveEvent.OPERATOR_DISTINCT_UNTIL_CHANGED,
+                    0, TimeUnit.NANOSECONDS);
+        }
+
+        @NonNull
+        static <T, R> ObservableView<R> map(LiveEvent<T> source, EventFunction<? super T, ? extends R> function) {
+            return new TransformedObservable<>(source, TransformedLiveEvent.STAGE_MAP, function);
+        }
+
+        @NonNull
+        static <T> ObservableView<T> filter(LiveEvent<T> source, EventPredicate<? super T> predicate) {
+            return new TransformedObservable<>(source, TransformedLiveEvent.STAGE_FILTER, predicate);
+        }
+
+        @NonNull
+        static <T, R> ObservableView<R> switchMap(LiveEvent<T> source,
+                                                  EventFunction<? super T, ? extends ObservableView<R>> function) {
+            return new TransformedObservable<>(source, TransformedLiveEvent.STAGE_SWITCH_MAP, toLiveEvent(function));
+        }
+
+        /**
+         * switchMap的函数返回ObservableView，内层需要作为LiveEvent订阅
+         */
+        private static <T, R> EventFunction<T, LiveEvent<R>> toLiveEvent(
+                final EventFunction<? super T, ? extends ObservableView<R>> function) {
+            return new EventFunction<T, LiveEvent<R>>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public LiveEvent<R> apply(@Nullable T input) {
+                    ObservableView<R> observable = function.apply(input);
+                    if (observable != null && !(observable instanceof LiveEvent)) {
+                        throw new IllegalArgumentException(observable + " was not created by LiveEventBus");
+                    }
+                    return (LiveEvent<R>) observable;
+                }
+            };
+        }
+    }
+
+    /**
+     * 限流视图本身也是ObservableView，可以继续组合，例如{@code debounce(...).distinctUntilChanged()}
+     */
+    private static class RateLimitedObservable<T> extends RateLimitedLiveEvent<T> implements ObservableView<T> {
+        RateLimitedObservable(LiveEvent<T> source, int operator, long window, TimeUnit unit) {
+            super(source, operator, window, unit);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> debounce(long timeout, @NonNull TimeUnit unit) {
+            return Views.debounce(this, timeout, unit);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> throttleFirst(long window, @NonNull TimeUnit unit) {
+            return Views.throttleFirst(this, window, unit);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> throttleLast(long window, @NonNull TimeUnit unit) {
+            return Views.throttleLast(this, window, unit);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> sample(long period, @NonNull TimeUnit unit) {
+            return Views.sample(this, period, unit);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> distinctUntilChanged() {
+            return Views.distinctUntilChanged(this);
+        }
+
+        @NonNull
+        @Override
+        public <R> ObservableView<R> map(@NonNull EventFunction<? super T, ? extends R> function) {
+            return Views.map(this, function);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> filter(@NonNull EventPredicate<? super T> predicate) {
+            return Views.filter(this, predicate);
+        }
+
+        @NonNull
+        @Override
+        public <R> ObservableView<R> switchMap(@NonNull EventFunction<? super T, ? extends ObservableView<R>> function) {
+            return Views.switchMap(this, function);
+        }
+    }
+
+    /**
+     * 转换视图也是ObservableView，继续转换时融合，也可以再接限流视图
+     */
+    private static class TransformedObservable<T> extends TransformedLiveEvent<T> implements ObservableView<T> {
+        TransformedObservable(LiveEvent<?> source, int stage, Object function) {
+            super(source, stage, function);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> debounce(long timeout, @NonNull TimeUnit unit) {
+            return Views.debounce(this, timeout, unit);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> throttleFirst(long window, @NonNull TimeUnit unit) {
+            return Views.throttleFirst(this, window, unit);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> throttleLast(long window, @NonNull TimeUnit unit) {
+            return Views.throttleLast(this, window, unit);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> sample(long period, @NonNull TimeUnit unit) {
+            return Views.sample(this, period, unit);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> distinctUntilChanged() {
+            return Views.distinctUntilChanged(this);
+        }
+
+        @NonNull
+        @Override
+        public <R> ObservableView<R> map(@NonNull EventFunction<? super T, ? extends R> function) {
+            return Views.map(this, function);
+        }
+
+        @NonNull
+        @Override
+        public ObservableView<T> filter(@NonNull EventPredicate<? super T> predicate) {
+            return Views.filter(this, predicate);
+        }
+
+        @NonNull
+        @Override
+        public <R> ObservableView<R> switchMap(@NonNull EventFunction<? super T, ? extends ObservableView<R>> function) {
+            return Views.switchMap(this, function);
+        }
+    }
+
+    private static class ResolvedTypeChannels {
+        final int mVersion;
+        final List<TypeLiveEvent<Object>> mChannels;
+
+        ResolvedTypeChannels(int version, List<TypeLiveEvent<Object>> channels) {
+            mVersion = version;
+            mChannels = channels;
+        }
+    }
+
+    /**
+     * 按类型订阅的通道，只由{@link #setEvent(Object)}驱动
+     */
+    private static class TypeLiveEvent<T> extends ObservableLiveEvent<T> {
+        TypeLiveEvent(Class<?> type, Dispatcher dispatcher) {
+            super(type, dispatcher);
+        }
+    }
+
+    /**
+     * 通配符订阅，只由匹配的key发布的事件驱动
+     */
+    private static class TopicLiveEvent<T> extends ObservableLiveEvent<T> {
+
+        private final LiveEventBus mBus;
+        private final String mPattern;
+        //是否已加入前缀树，只在分发线程上读写
+        boolean mSubscribed;
+
+        TopicLiveEvent(LiveEventBus bus, String pattern, Dispatcher dispatcher) {
+            super(pattern, dispatcher);
+            mBus = bus;
+            mPattern = pattern;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void onObserversChanged() {
+            mBus.onTopicObserversChanged((TopicLiveEvent<Object>) this);
+        }
+    }
+
+    private static class SingletonHolder {
+        private static final LiveEventBus DEFAULT_BUS = new LiveEventBus(null);
+    }
+
+    /**
+     * 总线对通道的引用，数组和namedChannels里存放的是它。通道有观察者或者保留着粘性值时mRetained指向通道本身
+     */
+    private static final class ChannelRef extends WeakReference<BusLiveEvent<Object>> {
+        static final int NO_ID = -1;
+        final Object mName;
+        //通过EventKey访问过之后才有id，在channelLock下写入
+        int mId = NO_ID;
+        //只在分发线程上写入，只用来保持通道可达
+        @SuppressWarnings("unused")
+        BusLiveEvent<Object> mRetained;
+
+        ChannelRef(BusLiveEvent<Object> channel, Object name, ReferenceQueue<BusLiveEvent<Object>> queue) {
+            super(channel, queue);
+            mName = name;
+        }
+    }
+
+    static class BusLiveEvent<T> extends ObservableLiveEvent<T> {
+
+        private final LiveEventBus mBus;
+        final ChannelRef mRef;
+        //事件类型，只以Object使用过时是Object.class，在channelLock下写入
+        volatile Class<?> mType;
+        //以下字段只在分发线程上读写，mWeight由stickyLock保护；没有设置存活时间时发布的值mPublishedNanos为0
+        long mPublishedNanos;
+        long mWeight;
+
+        @SuppressWarnings("unchecked")
+        BusLiveEvent(LiveEventBus bus, Object name, Class<?> type, Dispatcher dispatcher,
+                     ReferenceQueue<BusLiveEvent<Object>> queue) {
+            super(name, dispatcher);
+            mBus = bus;
+            mType = type;
+            mRef = new ChannelRef((BusLiveEvent<Object>) this, name, queue);
+        }
+
+        /**
+         * 只有真正生效的值才转发给通配符订阅、发布监听（跨进程、持久化）：排队的值轮到它分发之后，被丢弃的值不会
+         */
+        @Override
+        protected void onValueDispatched(@Nullable T value) {
+            mBus.onPublished(self(), value);
+        }
+
+        @Override
+        public void observeSticky(@NonNull LifecycleOwner owner, @NonNull LiveEventObserver<T> observer,
+                                  int priority, @NonNull ThreadMode threadMode) {
+            mBus.expireIfStale(self());
+            super.observeSticky(owner, observer, priority, threadMode);
+        }
+
+        @Override
+        public void observeStickyForever(@NonNull LiveEventObserver<T> observer, int priority,
+                                         @NonNull ThreadMode threadMode) {
+            mBus.expireIfStale(self());
+            super.observeStickyForever(observer, priority, threadMode);
+        }
+
+        @Override
+        public void observeStickyForeverWeakly(@NonNull LiveEventObserver<T> observer, int priority,
+                                               @NonNull ThreadMode threadMode) {
+            mBus.expireIfStale(self());
+            super.observeStickyForeverWeakly(observer, priority, threadMode);
+        }
+
+        @Override
+        protected void onObserversChanged() {
+            mBus.onObserversChanged(self());
+        }
+
+        /**
+         * 过期或者超出总权重时释放粘性值，持久化的key同时在日志中写入墓碑，之后不再恢复
+         */
+        void releaseValue() {
+            clearValue();
+            StickyStore store = mBus.stickyStore;
+            if (store != null) {
+                store.remove(getKey());
+            }
+        }
+
+        /**
+         * 恢复持久化的值，只在创建之后、放入总线之前调用。存活时间从值当初发布的时候算起
+         */
+        @SuppressWarnings("unchecked")
+        void restoreValue(StickyStore.Record record) {
+            mPublishedNanos = System.nanoTime() - record.mAgeNanos;
+            setInitialValue((T) record.mValue);
+        }
+
+        @SuppressWarnings("unchecked")
+        private BusLiveEvent<Object> self() {
+            return (BusLiveEvent<Object>) this;
+        }
+
+        @Override
+        protected Lifecycle.State observerActiveLevel() {
+            return super.observerActiveLevel();
+//            return Lifecycle.State.STARTED;
+        }
+
+
+    }
+}
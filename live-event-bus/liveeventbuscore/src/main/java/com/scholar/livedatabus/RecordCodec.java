@@ -0,0 +1,240 @@
+package com.scholar.livedatabus;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.ByteBuffer;
+
+/**
+ * 带schema的记录格式：构造时声明各字段的类型，{@link #write}和{@link #read}按同样的顺序读写字段，不使用反射。
+ * <p>
+ * 编码格式：[byte 字段数][每个字段的类型][字段值]，String字段前面有int长度，null写-1。
+ * 每条记录带着写入方的schema，所以只在末尾追加字段时新旧版本可以互相读取：
+ * 旧记录缺少的字段读出默认值，新记录多出的字段被忽略；字段类型不一致时抛出IllegalArgumentException。
+ * <pre class="prettyprint">
+ * EventCodec&lt;Download&gt; codec = new RecordCodec&lt;Download&gt;(
+ *         RecordCodec.TYPE_STRING, RecordCodec.TYPE_LONG, RecordCodec.TYPE_LONG) {
+ *     protected void write(Download value, Writer writer) {
+ *         writer.putString(value.url).putLong(value.downloaded).putLong(value.total);
+ *     }
+ *
+ *     protected Download read(Reader reader) {
+ *         return new Download(reader.getString(), reader.getLong(), reader.getLong());
+ *     }
+ * };
+ * </pre>
+ *
+ * @param <T> 记录类型
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public abstract class RecordCodec<T> implements EventCodec<T> {
+
+    public static final int TYPE_BOOLEAN = 1;
+    public static final int TYPE_INT = 2;
+    public static final int TYPE_LONG = 3;
+    public static final int TYPE_DOUBLE = 4;
+    public static final int TYPE_STRING = 5;
+
+    private static final int MAX_FIELDS = Byte.MAX_VALUE;
+
+    private final byte[] mTypes;
+
+    /**
+     * @param types 各字段的类型，最多127个
+     */
+    protected RecordCodec(@FieldType int... types) {
+        if (types.length > MAX_FIELDS) {
+            throw new IllegalArgumentException("A record has at most " + MAX_FIELDS + " fields");
+        }
+        mTypes = new byte[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] < TYPE_BOOLEAN || types[i] > TYPE_STRING) {
+                throw new IllegalArgumentException("Unknown field type " + types[i]);
+            }
+            mTypes[i] = (byte) types[i];
+        }
+    }
+
+    /**
+     * 按schema的顺序写入value的所有字段
+     */
+    protected abstract void write(@NonNull T value, @NonNull Writer writer);
+
+    /**
+     * 按schema的顺序读取字段
+     */
+    @NonNull
+    protected abstract T read(@NonNull Reader reader);
+
+    @Override
+    public final void encode(@Nullable T value, @NonNull ByteBuffer buffer) {
+        if (value == null) {
+            return;
+        }
+        buffer.put((byte) mTypes.length);
+        buffer.put(mTypes);
+        Writer writer = new Writer(buffer, mTypes);
+        write(value, writer);
+        if (writer.mIndex != mTypes.length) {
+            throw new IllegalStateException(getClass().getName() + " wrote " + writer.mIndex
+                    + " of " + mTypes.length + " fields");
+        }
+    }
+
+    @Nullable
+    @Override
+    public final T decode(@NonNull ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            return null;
+        }
+        int fieldCount = buffer.get();
+        if (fieldCount < 0 || fieldCount > buffer.remaining()) {
+            throw new IllegalArgumentException("Corrupted record");
+        }
+        Reader reader = new Reader(buffer, buffer.position(), fieldCount);
+        buffer.position(buffer.position() + fieldCount);
+        T value = read(reader);
+        //新版本多出的字段
+        buffer.position(buffer.limit());
+        return value;
+    }
+
+    @IntDef({TYPE_BOOLEAN, TYPE_INT, TYPE_LONG, TYPE_DOUBLE, TYPE_STRING})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface FieldType {
+    }
+
+    /**
+     * 按schema的顺序写入字段，类型和schema不一致时抛出IllegalStateException
+     */
+    public static final class Writer {
+        private final ByteBuffer mBuffer;
+        private final byte[] mTypes;
+        private int mIndex;
+
+        Writer(ByteBuffer buffer, byte[] types) {
+            mBuffer = buffer;
+            mTypes = types;
+        }
+
+        public Writer putBoolean(boolean value) {
+            next(TYPE_BOOLEAN);
+            mBuffer.put(value ? (byte) 1 : (byte) 0);
+            return this;
+        }
+
+        public Writer putInt(int value) {
+            next(TYPE_INT);
+            mBuffer.putInt(value);
+            return this;
+        }
+
+        public Writer putLong(long value) {
+            next(TYPE_LONG);
+            mBuffer.putLong(value);
+            return this;
+        }
+
+        public Writer putDouble(double value) {
+            next(TYPE_DOUBLE);
+            mBuffer.putDouble(value);
+            return this;
+        }
+
+        public Writer putString(@Nullable String value) {
+            next(TYPE_STRING);
+            if (value == null) {
+                mBuffer.putInt(-1);
+                return this;
+            }
+            //先占位，写完再回填长度
+            int lengthPosition = mBuffer.position();
+            mBuffer.putInt(0);
+            EventCodecs.putUtf8(mBuffer, value);
+            mBuffer.putInt(lengthPosition, mBuffer.position() - lengthPosition - 4);
+            return this;
+        }
+
+        private void next(int type) {
+            if (mIndex >= mTypes.length) {
+                throw new IllegalStateException("Record has only " + mTypes.length + " fields");
+            }
+            if (mTypes[mIndex] != type) {
+                throw new IllegalStateException("Field " + mIndex + " is of type " + mTypes[mIndex]
+                        + ", not " + type);
+            }
+            mIndex++;
+        }
+    }
+
+    /**
+     * 按schema的顺序读取字段，记录中没有的字段返回默认值
+     */
+    public static final class Reader {
+        private final ByteBuffer mBuffer;
+        private final int mTypesPosition;
+        private final int mFieldCount;
+        private int mIndex;
+
+        Reader(ByteBuffer buffer, int typesPosition, int fieldCount) {
+            mBuffer = buffer;
+            mTypesPosition = typesPosition;
+            mFieldCount = fieldCount;
+        }
+
+        public boolean getBoolean() {
+            return next(TYPE_BOOLEAN) && mBuffer.get() != 0;
+        }
+
+        public int getInt() {
+            return next(TYPE_INT) ? mBuffer.getInt() : 0;
+        }
+
+        public long getLong() {
+            return next(TYPE_LONG) ? mBuffer.getLong() : 0L;
+        }
+
+        public double getDouble() {
+            return next(TYPE_DOUBLE) ? mBuffer.getDouble() : 0d;
+        }
+
+        @Nullable
+        public String getString() {
+            if (!next(TYPE_STRING)) {
+                return null;
+            }
+            int length = mBuffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            if (length > mBuffer.remaining()) {
+                throw new IllegalArgumentException("Corrupted record");
+            }
+            int limit = mBuffer.limit();
+            mBuffer.limit(mBuffer.position() + length);
+            String value = EventCodecs.getUtf8(mBuffer);
+            mBuffer.limit(limit);
+            return value;
+        }
+
+        /**
+         * @return 记录中有这个字段
+         */
+        private boolean next(int type) {
+            if (mIndex >= mFieldCount) {
+                return false;
+            }
+            int recorded = mBuffer.get(mTypesPosition + mIndex);
+            if (recorded != type) {
+                throw new IllegalArgumentException("Field " + mIndex + " was written as type " + recorded
+                        + ", not " + type);
+            }
+            mIndex++;
+            return true;
+        }
+    }
+}
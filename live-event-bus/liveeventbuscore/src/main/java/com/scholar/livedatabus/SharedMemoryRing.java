@@ -0,0 +1,391 @@
+package com.scholar.livedatabus;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * 内存映射文件上的单写多读环形缓冲区，每个进程只写自己的文件，读其他进程的文件，写入不需要跨进程加锁。
+ * <p>
+ * 文件格式：64字节的文件头（magic、容量、累计写入的字节数），之后是数据区。
+ * 每条记录按8字节对齐：[int 记录长度][int key长度][int payload长度][int 校验和][long 序号][key的UTF-8][payload]，
+ * 序号是记录在整个写入流中的位置，最后写入；数据区末尾放不下时写入一条同样带序号的填充记录
+ * （剩余的空间连记录头都放不下时不写），从数据区开头继续写。
+ * <p>
+ * 跨进程时Java 7没有办法对映射的内存做有序的写入：普通的put可能被编译器和CPU重排，
+ * 进程内的volatile字段也约束不了另一个进程看到的顺序。所以读取方不依赖写入的顺序，
+ * 写位置只用来判断还有没有新记录、是否落后太多；一条记录只有序号等于期望的位置、
+ * 并且校验和（覆盖记录头、key和payload）对得上时才算写完。依赖的只是共享映射的一致性：
+ * 写入最终对其他进程可见，并且某个位置被看到新值之后不会再读到旧值。
+ * <p>
+ * 读取方解码之前和之后各校验一次：之前的校验保证解码看到的就是写入方写的字节，之后的校验发现读取期间被覆盖的记录。
+ * 写位置已经越过、但内容还没有全部可见的记录留到下一次再读，连续{@link #MAX_STALLED_READS}次都不完整时丢弃；
+ * 读取方落后太多时直接跳到最新位置。完整但是解码失败的记录（payload不兼容、序列化方式已经注销）跳过并计数，
+ * 不影响之后的记录
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+final class SharedMemoryRing {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x4C454232;
+    private static final int HEADER_SIZE = 64;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_CAPACITY = 4;
+    private static final int OFFSET_WRITE_POSITION = 8;
+    private static final int RECORD_HEADER_SIZE = 24;
+    private static final int OFFSET_RECORD_KEY_LENGTH = 4;
+    private static final int OFFSET_RECORD_PAYLOAD_LENGTH = 8;
+    private static final int OFFSET_RECORD_CHECKSUM = 12;
+    private static final int OFFSET_RECORD_SEQUENCE = 16;
+    private static final int PADDING = -1;
+    private static final int UNCOMMITTED = -2;
+    static final int MAX_STALLED_READS = 16;
+    private static final long CHECKSUM_SEED = 0x4C69766545766E74L;
+    private static final long CHECKSUM_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mBuffer;
+    //批量读写用的视图，各自只由写入方或读取线程使用
+    private final ByteBuffer mView;
+    private final int mCapacity;
+
+    //以下只由读取线程使用
+    private long mReadPosition;
+    private long mDroppedRecordCount;
+    private long mFailedRecordCount;
+    private int mStalledReads;
+    private byte[] mKeyBuffer = new byte[64];
+    //readCommitted校验过的记录的key和payload长度
+    private int mKeyLength;
+    private int mPayloadLength;
+
+    private SharedMemoryRing(RandomAccessFile file, MappedByteBuffer buffer, int capacity) {
+        mFile = file;
+        mBuffer = buffer;
+        mCapacity = capacity;
+        mBuffer.order(ByteOrder.nativeOrder());
+        mView = buffer.duplicate();
+    }
+
+    /**
+     * 打开或创建本进程写入的文件，已存在且容量相同时接着原来的位置写
+     *
+     * @param capacity 数据区大小，按8字节对齐
+     */
+    @NonNull
+    static SharedMemoryRing openForWrite(@NonNull File file, int capacity) throws IOException {
+        capacity = align(capacity);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(HEADER_SIZE + capacity);
+        MappedByteBuffer buffer = randomAccessFile.getChannel()
+                .map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+        SharedMemoryRing ring = new SharedMemoryRing(randomAccessFile, buffer, capacity);
+        if (buffer.getInt(OFFSET_MAGIC) != MAGIC || buffer.getInt(OFFSET_CAPACITY) != capacity) {
+            buffer.putInt(OFFSET_MAGIC, 0);
+            buffer.putInt(OFFSET_CAPACITY, capacity);
+            buffer.putLong(OFFSET_WRITE_POSITION, 0);
+            buffer.putInt(OFFSET_MAGIC, MAGIC);
+        }
+        return ring;
+    }
+
+    /**
+     * 打开其他进程写入的文件，从当前的写位置开始读，不重放之前的记录
+     *
+     * @return 文件还没有初始化完成时返回null
+     */
+    @Nullable
+    static SharedMemoryRing openForRead(@NonNull File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        long length = randomAccessFile.length();
+        if (length < HEADER_SIZE) {
+            randomAccessFile.close();
+            return null;
+        }
+        MappedByteBuffer buffer = randomAccessFile.getChannel()
+                .map(FileChannel.MapMode.READ_ONLY, 0, length);
+        buffer.order(ByteOrder.nativeOrder());
+        int capacity = buffer.getInt(OFFSET_CAPACITY);
+        if (buffer.getInt(OFFSET_MAGIC) != MAGIC || capacity <= 0 || HEADER_SIZE + capacity > length) {
+            randomAccessFile.close();
+            return null;
+        }
+        SharedMemoryRing ring = new SharedMemoryRing(randomAccessFile, buffer, capacity);
+        ring.mReadPosition = ring.readWritePosition();
+        return ring;
+    }
+
+    /**
+     * @return 单条记录的最大字节数，超过一半容量的记录很容易被读取方错过，所以限制为四分之一
+     */
+    int getMaxRecordSize() {
+        return (mCapacity / 4) & ~7;
+    }
+
+    /**
+     * 追加一条记录，value由codec直接编码进映射的内存。只有本进程写入，同一进程内的多个线程通过锁互斥
+     *
+     * @return 记录超过{@link #getMaxRecordSize()}时不写入，返回false
+     */
+    synchronized boolean write(@NonNull byte[] key, @Nullable Object value, @NonNull EventCodec<Object> codec) {
+        int maxRecordSize = getMaxRecordSize();
+        MappedByteBuffer buffer = mBuffer;
+        long writePosition = buffer.getLong(OFFSET_WRITE_POSITION);
+        int offset = (int) (writePosition % mCapacity);
+        int payloadLength = encode(offset, maxRecordSize, key, value, codec);
+        if (payloadLength < 0 && mCapacity - offset < maxRecordSize) {
+            //数据区末尾放不下，填充后从开头写
+            if (mCapacity - offset >= RECORD_HEADER_SIZE) {
+                commit(HEADER_SIZE + offset, PADDING, 0, 0, writePosition);
+            }
+            //先发布填充，同一个序号不会再写入另一条记录
+            writePosition += mCapacity - offset;
+            buffer.putLong(OFFSET_WRITE_POSITION, writePosition);
+            offset = 0;
+            payloadLength = encode(offset, maxRecordSize, key, value, codec);
+        }
+        if (payloadLength < 0) {
+            return false;
+        }
+        int size = align(RECORD_HEADER_SIZE + key.length + payloadLength);
+        commit(HEADER_SIZE + offset, size, key.length, payloadLength, writePosition);
+        buffer.putLong(OFFSET_WRITE_POSITION, writePosition + size);
+        return true;
+    }
+
+    /**
+     * 写入记录头，key和payload已经写好，序号最后写入
+     */
+    private void commit(int position, int size, int keyLength, int payloadLength, long sequence) {
+        MappedByteBuffer buffer = mBuffer;
+        buffer.putInt(position, size);
+        buffer.putInt(position + OFFSET_RECORD_KEY_LENGTH, keyLength);
+        buffer.putInt(position + OFFSET_RECORD_PAYLOAD_LENGTH, payloadLength);
+        buffer.putInt(position + OFFSET_RECORD_CHECKSUM, checksum(position, size, keyLength, payloadLength, sequence));
+        buffer.putLong(position + OFFSET_RECORD_SEQUENCE, sequence);
+    }
+
+    /**
+     * 在数据区的offset处写入key和value，最多写到单条记录的上限或数据区末尾
+     *
+     * @return payload的字节数，放不下时返回-1
+     */
+    private int encode(int offset, int maxRecordSize, byte[] key, Object value, EventCodec<Object> codec) {
+        int position = HEADER_SIZE + offset;
+        int available = Math.min(maxRecordSize, mCapacity - offset);
+        if (available < RECORD_HEADER_SIZE) {
+            return -1;
+        }
+        mView.limit(position + available);
+        mView.position(position + RECORD_HEADER_SIZE);
+        try {
+            mView.put(key);
+            codec.encode(value, mView);
+            return mView.position() - position - RECORD_HEADER_SIZE - key.length;
+        } catch (BufferOverflowException e) {
+            return -1;
+        } finally {
+            mView.limit(mView.capacity());
+        }
+    }
+
+    /**
+     * 读出所有新的记录
+     *
+     * @return 读到的被接受的记录数
+     */
+    int read(@NonNull RecordHandler handler) {
+        int count = 0;
+        long writePosition = readWritePosition();
+        while (mReadPosition < writePosition) {
+            if (mayBeOverwritten(mReadPosition, writePosition)) {
+                //落后太多，中间的记录已经或者即将被覆盖
+                dropUntil(writePosition);
+                break;
+            }
+            long recordPosition = mReadPosition;
+            int offset = (int) (recordPosition % mCapacity);
+            if (mCapacity - offset < RECORD_HEADER_SIZE) {
+                //连记录头都放不下，写入方直接从开头继续
+                mReadPosition += mCapacity - offset;
+                continue;
+            }
+            int position = HEADER_SIZE + offset;
+            int size = readCommitted(position, recordPosition);
+            if (size == UNCOMMITTED) {
+                //内容还没有全部可见，下一次再读
+                if (++mStalledReads >= MAX_STALLED_READS) {
+                    dropUntil(readWritePosition());
+                }
+                break;
+            }
+            mStalledReads = 0;
+            if (size == PADDING) {
+                mReadPosition += mCapacity - offset;
+                continue;
+            }
+            int keyLength = mKeyLength;
+            int payloadLength = mPayloadLength;
+            if (mKeyBuffer.length < keyLength) {
+                mKeyBuffer = new byte[keyLength];
+            }
+            mView.position(position + RECORD_HEADER_SIZE);
+            mView.get(mKeyBuffer, 0, keyLength);
+            String key = new String(mKeyBuffer, 0, keyLength, UTF_8);
+            boolean accepted = handler.accept(key);
+            Object value = null;
+            boolean failed = false;
+            if (accepted) {
+                //直接在映射的内存上解码，确认没有被覆盖之后才交给handler
+                int payloadPosition = position + RECORD_HEADER_SIZE + keyLength;
+                mView.limit(payloadPosition + payloadLength);
+                mView.position(payloadPosition);
+                try {
+                    value = handler.decode(key, mView);
+                } catch (RuntimeException e) {
+                    failed = true;
+                } finally {
+                    mView.limit(mView.capacity());
+                }
+            }
+            //读取期间写入方追上来覆盖了这条记录
+            if (readCommitted(position, recordPosition) != size) {
+                dropUntil(readWritePosition());
+                break;
+            }
+            mReadPosition = recordPosition + size;
+            if (failed) {
+                //跳过这一条，继续读之后的记录
+                mFailedRecordCount++;
+            } else if (accepted) {
+                handler.onRecord(key, value);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 校验position处是否是序号为sequence的完整记录，是普通记录时把key和payload的长度存到mKeyLength、mPayloadLength
+     *
+     * @return 记录长度，填充记录返回PADDING，不完整或者已经被覆盖时返回UNCOMMITTED
+     */
+    private int readCommitted(int position, long sequence) {
+        MappedByteBuffer buffer = mBuffer;
+        if (buffer.getLong(position + OFFSET_RECORD_SEQUENCE) != sequence) {
+            return UNCOMMITTED;
+        }
+        int size = buffer.getInt(position);
+        int keyLength = buffer.getInt(position + OFFSET_RECORD_KEY_LENGTH);
+        int payloadLength = buffer.getInt(position + OFFSET_RECORD_PAYLOAD_LENGTH);
+        if (size == PADDING) {
+            if (keyLength != 0 || payloadLength != 0) {
+                return UNCOMMITTED;
+            }
+        } else if (size < RECORD_HEADER_SIZE || size > mCapacity - (position - HEADER_SIZE) || keyLength < 0
+                || payloadLength < 0 || keyLength + payloadLength > size - RECORD_HEADER_SIZE) {
+            return UNCOMMITTED;
+        }
+        if (buffer.getInt(position + OFFSET_RECORD_CHECKSUM)
+                != checksum(position, size, keyLength, payloadLength, sequence)) {
+            return UNCOMMITTED;
+        }
+        mKeyLength = keyLength;
+        mPayloadLength = payloadLength;
+        return size;
+    }
+
+    /**
+     * 记录头（除了校验和本身）、key和payload的64位乘法散列，数据部分按8字节读取
+     */
+    private int checksum(int position, int size, int keyLength, int payloadLength, long sequence) {
+        MappedByteBuffer buffer = mBuffer;
+        long hash = mix(CHECKSUM_SEED, ((long) size << 32) | (keyLength & 0xFFFFFFFFL));
+        hash = mix(hash, payloadLength);
+        hash = mix(hash, sequence);
+        int index = position + RECORD_HEADER_SIZE;
+        int end = index + keyLength + payloadLength;
+        for (; index + 8 <= end; index += 8) {
+            hash = mix(hash, buffer.getLong(index));
+        }
+        for (; index < end; index++) {
+            hash = mix(hash, buffer.get(index));
+        }
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * CHECKSUM_MULTIPLIER;
+        return hash ^ (hash >>> 29);
+    }
+
+    private void dropUntil(long writePosition) {
+        mDroppedRecordCount++;
+        mStalledReads = 0;
+        mReadPosition = writePosition;
+    }
+
+    /**
+     * 写入方在发布写位置之前就会写数据，正在写的记录加上末尾的填充最多两倍的单条上限，
+     * 所以记录离写位置超过容量减去这个余量就可能已经被覆盖
+     */
+    private boolean mayBeOverwritten(long recordPosition, long writePosition) {
+        return writePosition - recordPosition > mCapacity - 2 * getMaxRecordSize();
+    }
+
+    /**
+     * 写位置只是提示：它可能先于记录的内容可见，记录是否完整由readCommitted判断
+     */
+    private long readWritePosition() {
+        return mBuffer.getLong(OFFSET_WRITE_POSITION);
+    }
+
+    long getDroppedRecordCount() {
+        return mDroppedRecordCount;
+    }
+
+    long getFailedRecordCount() {
+        return mFailedRecordCount;
+    }
+
+    void close() {
+        try {
+            mFile.close();
+        } catch (IOException ignored) {
+            // ignore
+        }
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    interface RecordHandler {
+        /**
+         * @return 是否读取这个key的记录
+         */
+        boolean accept(@NonNull String key);
+
+        /**
+         * 解码记录，payload是映射内存的视图，返回之后不能再引用
+         */
+        @Nullable
+        Object decode(@NonNull String key, @NonNull ByteBuffer payload);
+
+        /**
+         * 记录确认没有被覆盖之后回调
+         */
+        void onRecord(@NonNull String key, @Nullable Object value);
+    }
+}
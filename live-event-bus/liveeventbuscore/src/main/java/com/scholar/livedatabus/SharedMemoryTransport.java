@@ -0,0 +1,357 @@
+package com.scholar.livedatabus;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 通过内存映射文件在进程之间同步选定的key。
+ * <p>
+ * 同一个目录下每个进程有一个自己写入的环形缓冲区文件（见{@link SharedMemoryRing}），
+ * 本进程发布{@link #mirror(String)}过的key时把事件写入自己的文件；
+ * 后台线程轮询其他进程的文件，读到本进程也同步了的key时在分发线程上setValue。
+ * 有新事件时连续读取，空闲时休眠：连续空闲的轮询间隔从{@link #setPollInterval}开始翻倍，
+ * 最长到{@link #setMaxPollInterval}，读到新事件后恢复最短的间隔。
+ * 按默认值，空闲之后的第一个事件最多延迟10毫秒左右（加上线程调度的时间），之后连续的事件延迟1毫秒左右；
+ * 代价是长时间空闲时轮询线程每秒唤醒约100次。跨进程没有可以用的唤醒信号，延迟和空闲唤醒只能通过这两个间隔权衡。
+ * <p>
+ * 其他进程的文件每200毫秒扫描一次，从发现时的位置开始读，所以对方进程刚启动时发布的事件可能收不到，
+ * 需要初始状态的key应当配合粘性的持久化使用。
+ * <p>
+ * 两个进程使用同一个目录和不同的进程名即可，不依赖Android，可以在普通JVM之间使用：
+ * <pre class="prettyprint">
+ * LiveEventBus.get().setCodec("login_state", EventCodecs.STRING);
+ * SharedMemoryTransport transport = SharedMemoryTransport.open(LiveEventBus.get(), dir, "push");
+ * transport.mirror("login_state");
+ * transport.start();
+ * </pre>
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public final class SharedMemoryTransport implements Closeable {
+
+    public static final int DEFAULT_CAPACITY = 256 * 1024;
+    private static final String FILE_SUFFIX = ".ring";
+    private static final long DEFAULT_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long DEFAULT_MAX_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long DISCOVER_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final LiveEventBus mBus;
+    private final File mDirectory;
+    private final String mProcessName;
+    private final SharedMemoryRing mOutbox;
+    //同步的key和对应的UTF-8编码
+    private final ConcurrentMap<String, byte[]> mMirroredKeys = new ConcurrentHashMap<>();
+    private volatile long mPollIntervalNanos = DEFAULT_POLL_INTERVAL_NANOS;
+    private volatile long mMaxPollIntervalNanos = DEFAULT_MAX_POLL_INTERVAL_NANOS;
+    private volatile boolean mClosed;
+    private Thread mPollThread;
+    //超过单条上限或者编码失败、没有写给其他进程的事件
+    private final AtomicLong mUnsentEventCount = new AtomicLong();
+    //轮询时交给分发线程失败等，解码失败的记录由各个文件自己计数
+    private final AtomicLong mFailedEventCount = new AtomicLong();
+
+    //只在分发线程上读写，正在应用的其他进程的事件，不再写回；观察者在回调中发布的其他事件照常同步
+    private String mApplyingKey;
+    private Object mApplyingValue;
+
+    //其他进程的文件，由轮询线程在自身的锁下读写
+    private final Map<String, SharedMemoryRing> mInboxes = new HashMap<>();
+    private long mLastDiscoverNanos;
+
+    private final LiveEventBus.PublishListener mPublishListener = new LiveEventBus.PublishListener() {
+        @Override
+        public void onPublished(@NonNull Object key, @Nullable Object value) {
+            if (mClosed || (value == mApplyingValue && key.equals(mApplyingKey))) {
+                return;
+            }
+            byte[] keyBytes = mMirroredKeys.get(key);
+            if (keyBytes == null) {
+                return;
+            }
+            //在分发线程上回调，不能抛出异常，否则这个key之后的分发都会中断
+            try {
+                if (!mOutbox.write(keyBytes, value, mBus.requireCodec(key))) {
+                    mUnsentEventCount.incrementAndGet();
+                }
+            } catch (RuntimeException e) {
+                //序列化方式已经注销或者编码失败
+                mUnsentEventCount.incrementAndGet();
+            }
+        }
+    };
+
+    private final SharedMemoryRing.RecordHandler mRecordHandler = new SharedMemoryRing.RecordHandler() {
+        @Override
+        public boolean accept(@NonNull String key) {
+            return mMirroredKeys.containsKey(key);
+        }
+
+        @Nullable
+        @Override
+        public Object decode(@NonNull String key, @NonNull ByteBuffer payload) {
+            return mBus.requireCodec(key).decode(payload);
+        }
+
+        @Override
+        public void onRecord(@NonNull final String key, @Nullable final Object value) {
+            mBus.dispatcher().post(new Runnable() {
+                @Override
+                public void run() {
+                    String previousKey = mApplyingKey;
+                    Object previousValue = mApplyingValue;
+                    mApplyingKey = key;
+                    mApplyingValue = value;
+                    try {
+                        mBus.with(key).setValue(value);
+                    } finally {
+                        mApplyingKey = previousKey;
+                        mApplyingValue = previousValue;
+                    }
+                }
+            });
+        }
+    };
+
+    private SharedMemoryTransport(LiveEventBus bus, File directory, String processName,
+                                  SharedMemoryRing outbox) {
+        mBus = bus;
+        mDirectory = directory;
+        mProcessName = processName;
+        mOutbox = outbox;
+    }
+
+    /**
+     * 打开本进程的环形缓冲区文件，调用{@link #start()}之后才开始接收其他进程的事件
+     *
+     * @param directory   所有进程共用的目录，例如应用私有目录下的子目录
+     * @param processName 本进程的名字，同一目录下唯一，作为文件名
+     */
+    @NonNull
+    public static SharedMemoryTransport open(@NonNull LiveEventBus bus, @NonNull File directory,
+                                             @NonNull String processName) throws IOException {
+        return open(bus, directory, processName, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 本进程缓冲区的字节数，单个事件最多占四分之一，超过的事件不同步，见{@link #getUnsentEventCount()}
+     */
+    @NonNull
+    public static SharedMemoryTransport open(@NonNull LiveEventBus bus, @NonNull File directory,
+                                             @NonNull String processName, int capacity)
+            throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        SharedMemoryRing outbox = SharedMemoryRing.openForWrite(
+                new File(directory, processName + FILE_SUFFIX), capacity);
+        return new SharedMemoryTransport(bus, directory, processName, outbox);
+    }
+
+    /**
+     * 在进程之间同步key：本进程发布的值写给其他进程，其他进程发布的值在本进程setValue。
+     * 每个需要收发的进程都要调用，并且用{@link LiveEventBus#setCodec(Object, EventCodec)}注册同样的序列化方式
+     *
+     * @throws IllegalStateException key没有注册序列化方式
+     */
+    public void mirror(@NonNull String key) {
+        mBus.requireCodec(key);
+        if (mMirroredKeys.putIfAbsent(key, key.getBytes(SharedMemoryRing.UTF_8)) == null) {
+            mBus.addPublishListener(key, mPublishListener);
+        }
+    }
+
+    public void unmirror(@NonNull String key) {
+        if (mMirroredKeys.remove(key) != null) {
+            mBus.removePublishListener(key, mPublishListener);
+        }
+    }
+
+    /**
+     * 刚刚空闲时两次轮询之间的间隔，默认1毫秒，越短连续事件的延迟越低
+     */
+    public void setPollInterval(long interval, @NonNull TimeUnit unit) {
+        mPollIntervalNanos = unit.toNanos(interval);
+    }
+
+    /**
+     * 连续空闲时轮询间隔翻倍的上限，也是空闲之后第一个事件的最大延迟，默认10毫秒；
+     * 越短延迟越低但空闲时的唤醒越多，对耗电敏感、能接受更高延迟的进程可以调大
+     */
+    public void setMaxPollInterval(long interval, @NonNull TimeUnit unit) {
+        mMaxPollIntervalNanos = unit.toNanos(interval);
+    }
+
+    /**
+     * 启动轮询线程
+     */
+    public synchronized void start() {
+        if (mPollThread != null || mClosed) {
+            return;
+        }
+        mPollThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pollLoop();
+            }
+        }, "LiveEventBus-ipc-" + mProcessName);
+        mPollThread.setDaemon(true);
+        mPollThread.start();
+    }
+
+    /**
+     * @return 因为本进程读取太慢而错过的其他进程的事件数
+     */
+    public long getDroppedEventCount() {
+        long dropped = 0;
+        synchronized (mInboxes) {
+            for (SharedMemoryRing inbox : mInboxes.values()) {
+                dropped += inbox.getDroppedRecordCount();
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * @return 其他进程写入、本进程解码失败而跳过的事件数，例如payload不兼容或者序列化方式已经注销
+     */
+    public long getFailedEventCount() {
+        long failed = mFailedEventCount.get();
+        synchronized (mInboxes) {
+            for (SharedMemoryRing inbox : mInboxes.values()) {
+                failed += inbox.getFailedRecordCount();
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * @return 本进程发布、但是超过单条记录的上限或者编码失败而没有写给其他进程的事件数
+     */
+    public long getUnsentEventCount() {
+        return mUnsentEventCount.get();
+    }
+
+    @Override
+    public void close() {
+        mClosed = true;
+        for (String key : mMirroredKeys.keySet()) {
+            unmirror(key);
+        }
+        Thread pollThread;
+        synchronized (this) {
+            pollThread = mPollThread;
+        }
+        if (pollThread != null) {
+            LockSupport.unpark(pollThread);
+            try {
+                pollThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (mInboxes) {
+            for (SharedMemoryRing inbox : mInboxes.values()) {
+                inbox.close();
+            }
+            mInboxes.clear();
+        }
+        mOutbox.close();
+    }
+
+    /**
+     * 只有{@link #close()}之后才退出
+     */
+    private void pollLoop() {
+        long idleNanos = 0;
+        while (!mClosed) {
+            int received;
+            try {
+                received = poll();
+            } catch (RuntimeException e) {
+                //出错的记录已经读过，下一次从之后的记录继续
+                mFailedEventCount.incrementAndGet();
+                received = 0;
+            }
+            //有新事件时马上再读一次，空闲时休眠，连续空闲时间隔翻倍
+            if (received > 0) {
+                idleNanos = 0;
+            } else {
+                long minimum = mPollIntervalNanos;
+                idleNanos = Math.max(minimum, Math.min(idleNanos * 2, mMaxPollIntervalNanos));
+                LockSupport.parkNanos(this, idleNanos);
+            }
+        }
+    }
+
+    /**
+     * @return 读到的事件数
+     */
+    private int poll() {
+        long now = System.nanoTime();
+        if (now - mLastDiscoverNanos >= DISCOVER_INTERVAL_NANOS || mLastDiscoverNanos == 0) {
+            mLastDiscoverNanos = now;
+            discoverPeers();
+        }
+        int received = 0;
+        synchronized (mInboxes) {
+            for (SharedMemoryRing inbox : mInboxes.values()) {
+                received += inbox.read(mRecordHandler);
+            }
+        }
+        return received;
+    }
+
+    /**
+     * 打开目录下新出现的其他进程的文件，关闭已经删除的文件
+     */
+    private void discoverPeers() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        String outbox = mProcessName + FILE_SUFFIX;
+        synchronized (mInboxes) {
+            Map<String, File> present = new HashMap<>();
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(FILE_SUFFIX) && !name.equals(outbox)) {
+                    present.put(name, file);
+                }
+            }
+            for (Iterator<Map.Entry<String, SharedMemoryRing>> it = mInboxes.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, SharedMemoryRing> entry = it.next();
+                if (!present.containsKey(entry.getKey())) {
+                    entry.getValue().close();
+                    it.remove();
+                }
+            }
+            for (Map.Entry<String, File> entry : present.entrySet()) {
+                if (mInboxes.containsKey(entry.getKey())) {
+                    continue;
+                }
+                try {
+                    SharedMemoryRing inbox = SharedMemoryRing.openForRead(entry.getValue());
+                    if (inbox != null) {
+                        mInboxes.put(entry.getKey(), inbox);
+                    }
+                } catch (IOException ignored) {
+                    //文件正在创建，下次再试
+                }
+            }
+        }
+    }
+}
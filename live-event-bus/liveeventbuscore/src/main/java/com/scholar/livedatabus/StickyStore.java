@@ -0,0 +1,494 @@
+package com.scholar.livedatabus;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.scholar.livedatabus.liveevent.Dispatchers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把选定key的粘性值持久化到内存映射的追加日志中，进程重启后第一次{@link LiveEventBus#with(Object)}时恢复。
+ * <p>
+ * 每次发布追加一条记录：[int 记录长度][int key长度][int payload长度][int 保留][long 发布时间][key的UTF-8][payload]，
+ * 按8字节对齐，写完记录再更新文件头中的有效长度，进程在写入中途被杀时未完成的记录会被忽略。
+ * 发布时间是墙上时间，恢复时据此计算{@link LiveEventBus#setStickyTtl}的存活时间，已经过期的值不恢复；
+ * 总线因为过期或者超出总权重释放持久化的值时追加一条payload长度为-1的墓碑，之后不再恢复这个key。
+ * 数据只写入映射的内存，由系统写回磁盘，进程被杀不会丢失，系统崩溃时可能丢失最近的写入。
+ * <p>
+ * 打开时只映射文件，第一次恢复或写入时才扫描一遍日志建立key到最新记录的索引，
+ * 只有被{@link LiveEventBus#with(Object)}用到的key才会解码。
+ * 日志写满并且过期的记录超过有效记录时压缩：把每个key最新的记录复制到新文件再替换原文件。
+ * 压缩在后台线程上进行，写入的线程（通常是分发线程）只扩大文件，不等待压缩；
+ * 压缩只在复制记录和替换文件时持有锁，最慢的刷盘不持有锁，期间追加的记录在替换之前补到新文件里
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public final class StickyStore {
+
+    private static final int MAGIC = 0x4C455332;
+    private static final int HEADER_SIZE = 64;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_END = 8;
+    private static final int RECORD_HEADER_SIZE = 24;
+    private static final int OFFSET_RECORD_KEY_LENGTH = 4;
+    private static final int OFFSET_RECORD_PAYLOAD_LENGTH = 8;
+    private static final int OFFSET_RECORD_PUBLISHED = 16;
+    private static final int TOMBSTONE = -1;
+    private static final int INITIAL_SIZE = 64 * 1024;
+    //日志小于这个大小时不压缩
+    private static final int MIN_COMPACT_SIZE = 64 * 1024;
+
+    private final LiveEventBus mBus;
+    private final File mFile;
+    //持久化的key和对应的UTF-8编码
+    private final ConcurrentMap<String, byte[]> mPersistedKeys = new ConcurrentHashMap<>();
+    //同时只进行一次压缩
+    private final Object mCompactLock = new Object();
+
+    //以下由this的锁保护
+    private RandomAccessFile mRandomAccessFile;
+    private MappedByteBuffer mBuffer;
+    private ByteBuffer mView;
+    //key到最新记录的偏移，第一次使用时建立
+    private Map<String, Integer> mIndex;
+    private long mLiveBytes;
+    private long mCompactionCount;
+    private long mFailedWriteCount;
+    private boolean mCompactionScheduled;
+
+    private final LiveEventBus.PublishListener mPublishListener = new LiveEventBus.PublishListener() {
+        @Override
+        public void onPublished(@NonNull Object key, @Nullable Object value) {
+            byte[] keyBytes = mPersistedKeys.get(key);
+            if (keyBytes == null) {
+                return;
+            }
+            //在分发线程上回调，写入失败（磁盘已满、序列化方式已经注销）只丢弃这次持久化，不影响内存中的分发
+            try {
+                append((String) key, keyBytes, value, mBus.requireCodec(key));
+            } catch (RuntimeException e) {
+                onWriteFailed();
+                //尽量写入墓碑，重启后不恢复被这次发布覆盖的旧值
+                remove(key);
+            }
+        }
+    };
+
+    private final Runnable mCompactTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                compact();
+            } catch (IOException e) {
+                //压缩失败只是日志没有变小，不影响写入
+            } finally {
+                synchronized (StickyStore.this) {
+                    mCompactionScheduled = false;
+                }
+            }
+        }
+    };
+
+    private StickyStore(LiveEventBus bus, File file) {
+        mBus = bus;
+        mFile = file;
+    }
+
+    /**
+     * 打开日志并安装到总线上，应当在使用总线之前调用，例如Application.onCreate
+     */
+    @NonNull
+    public static StickyStore open(@NonNull LiveEventBus bus, @NonNull File file) throws IOException {
+        StickyStore store = new StickyStore(bus, file);
+        store.map(Math.max(file.length(), HEADER_SIZE + INITIAL_SIZE));
+        bus.stickyStore = store;
+        return store;
+    }
+
+    /**
+     * 持久化key的粘性值：之后每次发布都写入日志，进程重启后第一次with(key)时恢复。
+     * 应当在第一次with(key)之前调用，已经创建的事件不会再恢复。
+     * 值通过{@link LiveEventBus#setCodec(Object, EventCodec)}注册的序列化方式读写
+     *
+     * @throws IllegalStateException key没有注册序列化方式
+     */
+    public void persist(@NonNull String key) {
+        mBus.requireCodec(key);
+        if (mPersistedKeys.putIfAbsent(key, key.getBytes(SharedMemoryRing.UTF_8)) == null) {
+            mBus.addPublishListener(key, mPublishListener);
+        }
+    }
+
+    public void unpersist(@NonNull String key) {
+        if (mPersistedKeys.remove(key) != null) {
+            mBus.removePublishListener(key, mPublishListener);
+        }
+    }
+
+    /**
+     * @return 已经压缩的次数
+     */
+    public synchronized long getCompactionCount() {
+        return mCompactionCount;
+    }
+
+    /**
+     * @return 因为扩大文件失败或者编码失败而没有写入日志的次数，这些值进程重启后不会恢复，墓碑也写入失败时恢复的是更早的值
+     */
+    public synchronized long getFailedWriteCount() {
+        return mFailedWriteCount;
+    }
+
+    private synchronized void onWriteFailed() {
+        mFailedWriteCount++;
+    }
+
+    /**
+     * 在调用的线程上立即压缩日志，期间的写入只在复制记录时等待
+     */
+    public void compact() throws IOException {
+        synchronized (mCompactLock) {
+            Compaction compaction;
+            synchronized (this) {
+                ensureIndex();
+                compaction = startCompactionLocked();
+            }
+            boolean finished = false;
+            try {
+                //新文件完整落盘之后才能替换原文件，刷盘期间的写入追加在原文件上
+                compaction.mBuffer.force();
+                synchronized (this) {
+                    finishCompactionLocked(compaction);
+                }
+                finished = true;
+            } finally {
+                if (!finished) {
+                    compaction.discard();
+                }
+            }
+        }
+    }
+
+    /**
+     * 创建事件之前调用，不持有总线的锁：第一次调用时扫描日志，然后在映射的内存上解码。
+     * 解码失败的记录被丢弃并写入墓碑，不会让之后的每次with(key)都失败
+     *
+     * @return key没有持久化、日志中没有值或者解码失败时返回null
+     */
+    @Nullable
+    Record read(@NonNull Object key) {
+        if (!(key instanceof String) || !mPersistedKeys.containsKey(key)) {
+            return null;
+        }
+        EventCodec<Object> codec = mBus.requireCodec(key);
+        synchronized (this) {
+            ensureIndex();
+            Integer offset = mIndex.get(key);
+            if (offset == null) {
+                return null;
+            }
+            long publishedMillis = mBuffer.getLong(offset + OFFSET_RECORD_PUBLISHED);
+            int payloadPosition = offset + RECORD_HEADER_SIZE + mBuffer.getInt(offset + OFFSET_RECORD_KEY_LENGTH);
+            mView.limit(payloadPosition + mBuffer.getInt(offset + OFFSET_RECORD_PAYLOAD_LENGTH));
+            mView.position(payloadPosition);
+            Object value;
+            try {
+                value = codec.decode(mView);
+            } catch (RuntimeException e) {
+                //payload损坏或者序列化格式已经改变
+                remove(key);
+                return null;
+            } finally {
+                mView.limit(mView.capacity());
+            }
+            return new Record(value, TimeUnit.MILLISECONDS.toNanos(
+                    Math.max(0, System.currentTimeMillis() - publishedMillis)));
+        }
+    }
+
+    /**
+     * 总线释放了key的粘性值时调用，追加一条墓碑；通常在分发线程上，写入失败时只计数
+     */
+    void remove(@NonNull Object key) {
+        byte[] keyBytes = mPersistedKeys.get(key);
+        if (keyBytes == null) {
+            return;
+        }
+        synchronized (this) {
+            ensureIndex();
+            if (mIndex.containsKey(key)) {
+                try {
+                    append((String) key, keyBytes, null, null);
+                } catch (RuntimeException e) {
+                    mFailedWriteCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param codec 为null时写入墓碑
+     */
+    private synchronized void append(String key, byte[] keyBytes, Object value, EventCodec<Object> codec) {
+        ensureIndex();
+        int end = (int) mBuffer.getLong(OFFSET_END);
+        int payloadLength;
+        //直接编码到日志末尾，放不下时扩大文件后重新编码，过期的记录太多时同时安排后台压缩
+        while ((payloadLength = encode(end, keyBytes, value, codec)) < 0) {
+            if (!mCompactionScheduled && end - HEADER_SIZE > MIN_COMPACT_SIZE && end - HEADER_SIZE > 2 * mLiveBytes) {
+                mCompactionScheduled = true;
+                try {
+                    Dispatchers.getAsyncExecutor().execute(mCompactTask);
+                } catch (RuntimeException e) {
+                    //线程池已经关闭，只扩大文件，下次写满时再试
+                    mCompactionScheduled = false;
+                }
+            }
+            try {
+                map(mBuffer.capacity() * 2L);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot grow sticky log " + mFile, e);
+            }
+            end = (int) mBuffer.getLong(OFFSET_END);
+        }
+        int size = align(RECORD_HEADER_SIZE + keyBytes.length + payloadLength);
+        mBuffer.putInt(end, size);
+        mBuffer.putInt(end + OFFSET_RECORD_KEY_LENGTH, keyBytes.length);
+        mBuffer.putInt(end + OFFSET_RECORD_PAYLOAD_LENGTH, codec != null ? payloadLength : TOMBSTONE);
+        mBuffer.putLong(end + OFFSET_RECORD_PUBLISHED, System.currentTimeMillis());
+        //记录写完之后再更新有效长度
+        mBuffer.putLong(OFFSET_END, end + size);
+
+        //墓碑本身不算有效记录，压缩时和被它覆盖的记录一起丢弃
+        Integer previous = codec != null ? mIndex.put(key, end) : mIndex.remove(key);
+        if (previous != null) {
+            mLiveBytes -= mBuffer.getInt(previous);
+        }
+        if (codec != null) {
+            mLiveBytes += size;
+        }
+    }
+
+    /**
+     * @return payload的字节数，文件剩余的空间放不下时返回-1
+     */
+    private int encode(int end, byte[] keyBytes, Object value, EventCodec<Object> codec) {
+        //对齐的填充也要放得下
+        int limit = mBuffer.capacity() & ~7;
+        if (end + RECORD_HEADER_SIZE > limit) {
+            return -1;
+        }
+        mView.limit(limit);
+        mView.position(end + RECORD_HEADER_SIZE);
+        try {
+            mView.put(keyBytes);
+            if (codec != null) {
+                codec.encode(value, mView);
+            }
+            return mView.position() - end - RECORD_HEADER_SIZE - keyBytes.length;
+        } catch (BufferOverflowException e) {
+            return -1;
+        } finally {
+            mView.limit(mView.capacity());
+        }
+    }
+
+    /**
+     * 扫描日志建立索引，只读取key，不解码值
+     */
+    private void ensureIndex() {
+        if (mIndex != null) {
+            return;
+        }
+        mIndex = new HashMap<>();
+        mLiveBytes = 0;
+        int end = (int) mBuffer.getLong(OFFSET_END);
+        byte[] keyBuffer = new byte[64];
+        int position = HEADER_SIZE;
+        while (position < end) {
+            int size = mBuffer.getInt(position);
+            int keyLength = mBuffer.getInt(position + OFFSET_RECORD_KEY_LENGTH);
+            int payloadLength = mBuffer.getInt(position + OFFSET_RECORD_PAYLOAD_LENGTH);
+            if (size < RECORD_HEADER_SIZE || position + size > end
+                    || keyLength < 0 || keyLength > size - RECORD_HEADER_SIZE
+                    || payloadLength < TOMBSTONE || payloadLength > size - RECORD_HEADER_SIZE - keyLength) {
+                //文件损坏，丢弃后面的记录
+                mBuffer.putLong(OFFSET_END, position);
+                break;
+            }
+            if (keyBuffer.length < keyLength) {
+                keyBuffer = new byte[keyLength];
+            }
+            mView.position(position + RECORD_HEADER_SIZE);
+            mView.get(keyBuffer, 0, keyLength);
+            String key = new String(keyBuffer, 0, keyLength, SharedMemoryRing.UTF_8);
+            boolean tombstone = payloadLength == TOMBSTONE;
+            Integer previous = tombstone ? mIndex.remove(key) : mIndex.put(key, position);
+            if (previous != null) {
+                mLiveBytes -= mBuffer.getInt(previous);
+            }
+            if (!tombstone) {
+                mLiveBytes += size;
+            }
+            position += size;
+        }
+    }
+
+    /**
+     * 把每个key最新的记录复制到临时文件，还没有刷盘
+     */
+    private Compaction startCompactionLocked() throws IOException {
+        File file = new File(mFile.getPath() + ".compact");
+        int size = HEADER_SIZE + (int) Math.max(mLiveBytes * 2, INITIAL_SIZE);
+        Compaction compaction = new Compaction(file, new RandomAccessFile(file, "rw"));
+        boolean started = false;
+        try {
+            compaction.map(size);
+            MappedByteBuffer buffer = compaction.mBuffer;
+            int position = HEADER_SIZE;
+            for (Map.Entry<String, Integer> entry : mIndex.entrySet()) {
+                int offset = entry.getValue();
+                int recordSize = mBuffer.getInt(offset);
+                ByteBuffer record = mBuffer.duplicate();
+                record.limit(offset + recordSize).position(offset);
+                buffer.position(position);
+                buffer.put(record);
+                compaction.mIndex.put(entry.getKey(), position);
+                position += recordSize;
+            }
+            buffer.putLong(OFFSET_END, position);
+            buffer.putInt(OFFSET_MAGIC, MAGIC);
+            compaction.mSourceEnd = (int) mBuffer.getLong(OFFSET_END);
+            compaction.mEnd = position;
+            started = true;
+            return compaction;
+        } finally {
+            if (!started) {
+                compaction.discard();
+            }
+        }
+    }
+
+    /**
+     * 把开始压缩之后追加的记录原样补到新文件的末尾（包括墓碑），再替换原文件
+     */
+    private void finishCompactionLocked(Compaction compaction) throws IOException {
+        int from = compaction.mSourceEnd;
+        int end = (int) mBuffer.getLong(OFFSET_END);
+        int position = compaction.mEnd;
+        if (end > from) {
+            compaction.map(align(position + end - from + HEADER_SIZE));
+            ByteBuffer appended = mBuffer.duplicate();
+            appended.limit(end).position(from);
+            compaction.mBuffer.position(position);
+            compaction.mBuffer.put(appended);
+        }
+        compaction.mBuffer.putLong(OFFSET_END, position + end - from);
+        //之后才写入的key指向补过去的记录，其余的key指向复制的记录，期间被墓碑删除的key已经不在mIndex中
+        Map<String, Integer> index = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : mIndex.entrySet()) {
+            int offset = entry.getValue();
+            index.put(entry.getKey(), offset >= from ? offset - from + position : compaction.mIndex.get(entry.getKey()));
+        }
+        if (!compaction.mFile.renameTo(mFile)) {
+            throw new IOException("Cannot replace " + mFile);
+        }
+        RandomAccessFile previous = mRandomAccessFile;
+        mRandomAccessFile = compaction.mRandomAccessFile;
+        mBuffer = compaction.mBuffer;
+        mView = mBuffer.duplicate();
+        mIndex = index;
+        mCompactionCount++;
+        try {
+            previous.close();
+        } catch (IOException e) {
+            //原文件已经被替换
+        }
+    }
+
+    private void map(long size) throws IOException {
+        if (mRandomAccessFile == null) {
+            mRandomAccessFile = new RandomAccessFile(mFile, "rw");
+        }
+        if (mRandomAccessFile.length() < size) {
+            mRandomAccessFile.setLength(size);
+        }
+        mBuffer = mRandomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        mBuffer.order(ByteOrder.nativeOrder());
+        mView = mBuffer.duplicate();
+        if (mBuffer.getInt(OFFSET_MAGIC) != MAGIC) {
+            mBuffer.putLong(OFFSET_END, HEADER_SIZE);
+            mBuffer.putInt(OFFSET_MAGIC, MAGIC);
+        }
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    /**
+     * 从日志中读出的值
+     */
+    static final class Record {
+        final Object mValue;
+        //距离发布时已经过去的时间
+        final long mAgeNanos;
+
+        Record(Object value, long ageNanos) {
+            mValue = value;
+            mAgeNanos = ageNanos;
+        }
+    }
+
+    /**
+     * 进行中的一次压缩
+     */
+    private static final class Compaction {
+        final File mFile;
+        final RandomAccessFile mRandomAccessFile;
+        final Map<String, Integer> mIndex = new HashMap<>();
+        MappedByteBuffer mBuffer;
+        //开始压缩时原文件的有效长度
+        int mSourceEnd;
+        //复制的记录之后的位置
+        int mEnd;
+
+        Compaction(File file, RandomAccessFile randomAccessFile) {
+            mFile = file;
+            mRandomAccessFile = randomAccessFile;
+        }
+
+        void map(int size) throws IOException {
+            if (mBuffer != null && mBuffer.capacity() >= size) {
+                return;
+            }
+            mRandomAccessFile.setLength(size);
+            mBuffer = mRandomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            mBuffer.order(ByteOrder.nativeOrder());
+        }
+
+        void discard() {
+            try {
+                mRandomAccessFile.close();
+            } catch (IOException e) {
+                //只是临时文件
+            }
+            //noinspection ResultOfMethodCallIgnored
+            mFile.delete();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.scholar.livedatabus;
+
+import com.scholar.livedatabus.liveevent.LiveEvent;
+import com.scholar.livedatabus.liveevent.ThreadMode;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记事件处理方法，由liveeventbuscompiler在编译期生成{@link SubscriberIndex}，
+ * 运行时通过{@link LiveEventBus#register(android.arch.lifecycle.LifecycleOwner, Object)}一次注册所有方法，不使用反射。
+ * <p>
+ * 方法必须是public的，只有一个参数，参数类型即事件类型；返回boolean时返回值表示是否消费了事件，
+ * 返回void时不消费。所在的类也必须是public的
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Subscribe {
+    /**
+     * 事件的key，和{@link EventKey#of(Object, Class)}的名称相同
+     */
+    String key();
+
+    /**
+     * 见{@link LiveEvent#observe(android.arch.lifecycle.LifecycleOwner, com.scholar.livedatabus.liveevent.LiveEventObserver, int)}
+     */
+    int priority() default LiveEvent.DEFAULT_PRIORITY;
+
+    /**
+     * 是否以粘性模式注册
+     */
+    boolean sticky() default false;
+
+    ThreadMode threadMode() default ThreadMode.POSTING;
+}
@@ -0,0 +1,15 @@
+package com.scholar.livedatabus;
+
+import android.arch.lifecycle.LifecycleOwner;
+import android.support.annotation.NonNull;
+
+/**
+ * 把一个类的所有{@link Subscribe}方法注册到总线上，由注解处理器生成
+ *
+ * @param <T> 订阅者类型
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public interface SubscriberBinder<T> {
+    void bind(@NonNull LiveEventBus bus, @NonNull LifecycleOwner owner, @NonNull T target);
+}
@@ -0,0 +1,20 @@
+package com.scholar.livedatabus;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * 编译期生成的订阅索引，保存每个包含{@link Subscribe}方法的类对应的{@link SubscriberBinder}，
+ * 通过{@link LiveEventBus#addIndex(SubscriberIndex)}安装。
+ * 生成的类名由注解处理器参数{@code liveEventBusIndex}指定
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public interface SubscriberIndex {
+    /**
+     * @return targetClass自身声明或继承的所有{@link Subscribe}方法的注册器，没有时返回null
+     */
+    @Nullable
+    SubscriberBinder<?> getBinder(@NonNull Class<?> targetClass);
+}
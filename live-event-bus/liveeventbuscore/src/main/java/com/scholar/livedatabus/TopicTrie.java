@@ -0,0 +1,147 @@
+package com.scholar.livedatabus;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按"."分层的主题前缀树，支持两种通配符：
+ * <ul>
+ * <li>{@code *} 匹配一层，例如{@code download.*.progress}匹配{@code download.apk.progress}</li>
+ * <li>{@code #} 只能在最后，匹配零层或多层，例如{@code download.#}匹配{@code download}和{@code download.apk.progress}</li>
+ * </ul>
+ * 查找的开销只和主题的层数有关，和订阅的个数无关；结果按具体的主题缓存，订阅变化时清空。
+ * 缓存按访问顺序最多保留{@link #CACHE_CAPACITY}个主题，动态生成的主题（例如带id的）不会让缓存无限增长。
+ * <p>
+ * 不是线程安全的，只在分发线程上使用
+ *
+ * @param <V> 订阅
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+final class TopicTrie<V> {
+
+    static final String SEPARATOR = ".";
+    static final String SINGLE_LEVEL = "*";
+    static final String MULTI_LEVEL = "#";
+    static final int CACHE_CAPACITY = 128;
+
+    private final Node<V> mRoot = new Node<>();
+    private final LinkedHashMap<String, List<V>> mCache =
+            new LinkedHashMap<String, List<V>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<V>> eldest) {
+                    return size() > CACHE_CAPACITY;
+                }
+            };
+    private int mSize;
+
+    /**
+     * @throws IllegalArgumentException 主题格式不正确
+     */
+    static String[] parsePattern(@NonNull String pattern) {
+        String[] segments = pattern.split("\\.", -1);
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("Empty level in topic " + pattern);
+            }
+            boolean wildcard = segment.equals(SINGLE_LEVEL) || segment.equals(MULTI_LEVEL);
+            if (!wildcard && (segment.contains(SINGLE_LEVEL) || segment.contains(MULTI_LEVEL))) {
+                throw new IllegalArgumentException("Wildcard must occupy a whole level in topic " + pattern);
+            }
+            if (segment.equals(MULTI_LEVEL) && i != segments.length - 1) {
+                throw new IllegalArgumentException("'#' must be the last level in topic " + pattern);
+            }
+        }
+        return segments;
+    }
+
+    void add(@NonNull String pattern, @NonNull V subscription) {
+        Node<V> node = mRoot;
+        for (String segment : parsePattern(pattern)) {
+            Node<V> child = node.mChildren.get(segment);
+            if (child == null) {
+                child = new Node<>();
+                node.mChildren.put(segment, child);
+            }
+            node = child;
+        }
+        if (!node.mSubscriptions.contains(subscription)) {
+            node.mSubscriptions.add(subscription);
+            mSize++;
+            mCache.clear();
+        }
+    }
+
+    void remove(@NonNull String pattern, @NonNull V subscription) {
+        String[] segments = parsePattern(pattern);
+        if (remove(mRoot, segments, 0, subscription)) {
+            mSize--;
+            mCache.clear();
+        }
+    }
+
+    private boolean remove(Node<V> node, String[] segments, int level, V subscription) {
+        if (level == segments.length) {
+            return node.mSubscriptions.remove(subscription);
+        }
+        Node<V> child = node.mChildren.get(segments[level]);
+        if (child == null || !remove(child, segments, level + 1, subscription)) {
+            return false;
+        }
+        //删除空的分支
+        if (child.mSubscriptions.isEmpty() && child.mChildren.isEmpty()) {
+            node.mChildren.remove(segments[level]);
+        }
+        return true;
+    }
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * @return 匹配topic的所有订阅，返回的列表不会被修改，订阅变化后需要重新查找
+     */
+    @NonNull
+    List<V> match(@NonNull String topic) {
+        List<V> matched = mCache.get(topic);
+        if (matched == null) {
+            ArrayList<V> result = new ArrayList<>();
+            match(mRoot, topic.split("\\.", -1), 0, result);
+            matched = result.isEmpty() ? Collections.<V>emptyList() : Collections.unmodifiableList(result);
+            mCache.put(topic, matched);
+        }
+        return matched;
+    }
+
+    private void match(Node<V> node, String[] segments, int level, List<V> result) {
+        Node<V> multiLevel = node.mChildren.get(MULTI_LEVEL);
+        if (multiLevel != null) {
+            result.addAll(multiLevel.mSubscriptions);
+        }
+        if (level == segments.length) {
+            result.addAll(node.mSubscriptions);
+            return;
+        }
+        Node<V> exact = node.mChildren.get(segments[level]);
+        if (exact != null) {
+            match(exact, segments, level + 1, result);
+        }
+        Node<V> singleLevel = node.mChildren.get(SINGLE_LEVEL);
+        if (singleLevel != null && singleLevel != exact) {
+            match(singleLevel, segments, level + 1, result);
+        }
+    }
+
+    private static class Node<V> {
+        final HashMap<String, Node<V>> mChildren = new HashMap<>(4);
+        final ArrayList<V> mSubscriptions = new ArrayList<>(1);
+    }
+}
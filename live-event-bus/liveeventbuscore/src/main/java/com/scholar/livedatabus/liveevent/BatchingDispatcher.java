@@ -0,0 +1,127 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量分发的{@link Dispatcher}：所有key的postValue任务先进入同一个队列，
+ * 由一次分发线程上的任务按提交顺序全部执行，同一个key的事件顺序不变。
+ * 一个繁忙的页面每帧几十个postValue只占用一条主线程消息，不再和输入、绘制的消息交替排队。
+ * <p>
+ * 默认每批通过目标Dispatcher post一次；覆写{@link #scheduleDrain()}可以改成按帧对齐，
+ * 例如Android模块的FrameBatchingDispatcher。执行期间新提交的任务进入下一批。
+ * <pre class="prettyprint">
+ * Dispatchers.setDefault(new BatchingDispatcher(MainThreadManager.getInstance()));
+ * </pre>
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public class BatchingDispatcher implements Dispatcher {
+
+    private final Dispatcher mTarget;
+    private final Object mLock = new Object();
+    //以下由mLock保护，两个列表交替使用避免每批分配
+    private ArrayList<Runnable> mPending = new ArrayList<>();
+    private ArrayList<Runnable> mDraining = new ArrayList<>();
+    private boolean mDrainScheduled;
+    private long mPostedCount;
+    private long mDrainCount;
+
+    private final Runnable mDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * @param target 实际的分发线程，例如主线程
+     */
+    public BatchingDispatcher(@NonNull Dispatcher target) {
+        mTarget = target;
+    }
+
+    @Override
+    public boolean isDispatchThread() {
+        return mTarget.isDispatchThread();
+    }
+
+    @Override
+    public void post(@NonNull Runnable runnable) {
+        boolean schedule;
+        synchronized (mLock) {
+            mPending.add(runnable);
+            mPostedCount++;
+            schedule = !mDrainScheduled;
+            mDrainScheduled = true;
+        }
+        if (schedule) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * 安排一次{@link #drain()}，每批只调用一次，默认post到目标Dispatcher
+     */
+    protected void scheduleDrain() {
+        mTarget.post(mDrainTask);
+    }
+
+    /**
+     * 在分发线程上按序执行当前这一批任务。某个任务抛出异常时，剩下的任务放回队列头部，由下一批执行
+     */
+    protected void drain() {
+        ArrayList<Runnable> batch;
+        synchronized (mLock) {
+            batch = mPending;
+            mPending = mDraining;
+            mDraining = batch;
+            mDrainScheduled = false;
+            mDrainCount++;
+        }
+        int index = 0;
+        try {
+            for (int size = batch.size(); index < size; index++) {
+                batch.get(index).run();
+            }
+        } finally {
+            if (++index < batch.size()) {
+                requeue(batch.subList(index, batch.size()));
+            }
+            batch.clear();
+        }
+    }
+
+    private void requeue(List<Runnable> remaining) {
+        boolean schedule;
+        synchronized (mLock) {
+            mPending.addAll(0, remaining);
+            schedule = !mDrainScheduled;
+            mDrainScheduled = true;
+        }
+        if (schedule) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * @return 累计提交的任务数
+     */
+    public long getPostedCount() {
+        synchronized (mLock) {
+            return mPostedCount;
+        }
+    }
+
+    /**
+     * @return 累计执行的批数，即实际到达目标Dispatcher的消息数
+     */
+    public long getDrainCount() {
+        synchronized (mLock) {
+            return mDrainCount;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.scholar.livedatabus.liveevent;
+
+
+/**
+ * {@link BooleanLiveEvent}的观察者，回调参数是不装箱的boolean
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/2]
+ */
+public interface BooleanLiveEventObserver {
+    /**
+     * Called when the data is changed.
+     *
+     * @param value The new data
+     * @return is the data  consumed
+     */
+    boolean onChanged(boolean value);
+}
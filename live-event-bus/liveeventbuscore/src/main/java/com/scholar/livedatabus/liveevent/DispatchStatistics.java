@@ -0,0 +1,181 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * 内置的{@link DispatchTracer}实现，按key统计分发次数以及onChanged的耗时分布。
+ * 没有key的LiveEvent按描述它的字符串统计，统计一直保存到{@link #reset()}也不会让LiveEvent无法回收。
+ * 耗时直方图按2的幂分桶：第i个桶记录耗时在[2^(i-1), 2^i)纳秒之间的通知次数。
+ * <p>
+ * 统计在分发线程写入，可以在任意线程读取。
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/2]
+ */
+public class DispatchStatistics implements DispatchTracer {
+
+    public static final int HISTOGRAM_BUCKETS = 64;
+
+    private final ConcurrentMap<Object, KeyStatistics> mStatistics = new ConcurrentHashMap<>();
+
+    @Override
+    public void onPublish(@NonNull Object key, int version) {
+        statisticsFor(key).mPublished.incrementAndGet();
+    }
+
+    @Override
+    public void onNotifyStart(@NonNull Object key, @NonNull LiveEventObserver<?> observer, int priority) {
+    }
+
+    @Override
+    public void onNotifyEnd(@NonNull Object key, @NonNull LiveEventObserver<?> observer, long durationNanos) {
+        KeyStatistics statistics = statisticsFor(key);
+        statistics.mNotified.incrementAndGet();
+        statistics.mTotalNanos.addAndGet(durationNanos);
+        statistics.mLatencyHistogram.incrementAndGet(bucketOf(durationNanos));
+    }
+
+    @Override
+    public void onConsumed(@NonNull Object key, @NonNull LiveEventObserver<?> observer) {
+        statisticsFor(key).mConsumed.incrementAndGet();
+    }
+
+    @Override
+    public void onSkippedInactive(@NonNull Object key, @NonNull LiveEventObserver<?> observer) {
+        statisticsFor(key).mSkippedInactive.incrementAndGet();
+    }
+
+    /**
+     * @param key 事件的key
+     * @return 该key的统计数据，没有任何记录时返回null
+     */
+    @Nullable
+    public KeyStatistics get(@NonNull Object key) {
+        return mStatistics.get(key);
+    }
+
+    /**
+     * @return 所有key的统计数据
+     */
+    @NonNull
+    public Map<Object, KeyStatistics> getAll() {
+        return mStatistics;
+    }
+
+    public void reset() {
+        mStatistics.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<Object, KeyStatistics> entry : mStatistics.entrySet()) {
+            builder.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private KeyStatistics statisticsFor(Object key) {
+        KeyStatistics statistics = mStatistics.get(key);
+        if (statistics == null) {
+            KeyStatistics created = new KeyStatistics();
+            statistics = mStatistics.putIfAbsent(key, created);
+            if (statistics == null) {
+                statistics = created;
+            }
+        }
+        return statistics;
+    }
+
+    static int bucketOf(long durationNanos) {
+        if (durationNanos <= 0) {
+            return 0;
+        }
+        return Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(durationNanos));
+    }
+
+    public static class KeyStatistics {
+        private final AtomicLong mPublished = new AtomicLong();
+        private final AtomicLong mNotified = new AtomicLong();
+        private final AtomicLong mConsumed = new AtomicLong();
+        private final AtomicLong mSkippedInactive = new AtomicLong();
+        private final AtomicLong mTotalNanos = new AtomicLong();
+        private final AtomicLongArray mLatencyHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+        public long getPublished() {
+            return mPublished.get();
+        }
+
+        public long getNotified() {
+            return mNotified.get();
+        }
+
+        public long getConsumed() {
+            return mConsumed.get();
+        }
+
+        public long getSkippedInactive() {
+            return mSkippedInactive.get();
+        }
+
+        public long getTotalNanos() {
+            return mTotalNanos.get();
+        }
+
+        /**
+         * @return 耗时直方图的拷贝
+         */
+        public long[] getLatencyHistogram() {
+            long[] histogram = new long[HISTOGRAM_BUCKETS];
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                histogram[i] = mLatencyHistogram.get(i);
+            }
+            return histogram;
+        }
+
+        /**
+         * 根据直方图估算耗时分位数，返回所在桶的上界
+         *
+         * @param percentile 0~1之间的分位数，例如0.99
+         * @return 耗时上界，单位纳秒
+         */
+        public long getLatencyPercentileNanos(double percentile) {
+            long[] histogram = getLatencyHistogram();
+            long total = 0;
+            for (long count : histogram) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                seen += histogram[i];
+                if (seen >= target) {
+                    return i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : 1L << i);
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            long notified = getNotified();
+            return "published=" + getPublished()
+                    + ", notified=" + notified
+                    + ", consumed=" + getConsumed()
+                    + ", skippedInactive=" + getSkippedInactive()
+                    + ", avgNanos=" + (notified == 0 ? 0 : getTotalNanos() / notified)
+                    + ", p99Nanos<=" + getLatencyPercentileNanos(0.99);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.NonNull;
+
+
+/**
+ * 事件分发的追踪接口，通过{@link LiveEvent#setDispatchTracer(DispatchTracer)}全局安装。
+ * 未安装时分发路径上只有一次volatile读，不会有任何字符串拼接或日志开销。
+ * <p>
+ * 回调在分发线程（主线程）上同步执行，实现必须足够轻量；
+ * {@link ThreadMode#BACKGROUND}/{@link ThreadMode#ASYNC}观察者的notify回调在其投递线程上执行，实现需要线程安全。
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/2]
+ */
+public interface DispatchTracer {
+
+    /**
+     * 新的事件被设置，即将开始分发
+     *
+     * @param key     事件的key，没有key的LiveEvent是"类名@identityHashCode的十六进制"，不引用LiveEvent本身
+     * @param version 事件的版本号
+     */
+    void onPublish(@NonNull Object key, int version);
+
+    /**
+     * 即将调用观察者的onChanged
+     *
+     * @param key      事件的key
+     * @param observer 观察者
+     * @param priority 观察者的权重
+     */
+    void onNotifyStart(@NonNull Object key, @NonNull LiveEventObserver<?> observer, int priority);
+
+    /**
+     * 观察者的onChanged返回（或抛出异常）
+     *
+     * @param key           事件的key
+     * @param observer      观察者
+     * @param durationNanos onChanged的耗时，单位纳秒
+     */
+    void onNotifyEnd(@NonNull Object key, @NonNull LiveEventObserver<?> observer, long durationNanos);
+
+    /**
+     * 观察者消费了事件，后面的观察者不会再收到通知
+     *
+     * @param key      事件的key
+     * @param observer 消费事件的观察者
+     */
+    void onConsumed(@NonNull Object key, @NonNull LiveEventObserver<?> observer);
+
+    /**
+     * 观察者处于非活跃状态，本次分发被跳过
+     *
+     * @param key      事件的key
+     * @param observer 被跳过的观察者
+     */
+    void onSkippedInactive(@NonNull Object key, @NonNull LiveEventObserver<?> observer);
+}
@@ -0,0 +1,28 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.NonNull;
+
+
+/**
+ * 事件分发线程的抽象。setValue/observe等方法只能在分发线程上调用，
+ * postValue通过{@link #post(Runnable)}把任务切换到分发线程。
+ * <p>
+ * Android上的实现是主线程Looper（MainThreadManager），普通JVM上可以使用{@link ExecutorDispatcher}
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/2]
+ */
+public interface Dispatcher {
+
+    /**
+     * @return 当前线程是否是分发线程
+     */
+    boolean isDispatchThread();
+
+    /**
+     * 把任务post到分发线程执行
+     *
+     * @param runnable 任务
+     */
+    void post(@NonNull Runnable runnable);
+}
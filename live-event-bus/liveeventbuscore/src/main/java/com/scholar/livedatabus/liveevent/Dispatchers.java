@@ -0,0 +1,153 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * 默认{@link Dispatcher}以及{@link ThreadMode#BACKGROUND}/{@link ThreadMode#ASYNC}所用线程池的持有者。
+ * <p>
+ * 没有调用{@link #setDefault(Dispatcher)}时，使用Android模块在启动时（LiveEventBusInitializer）注册的MainThreadManager，
+ * 没有注册时再通过反射查找（Android模块带有对应的混淆规则）；
+ * 普通JVM上没有Android模块，必须先设置一个默认的Dispatcher，例如{@link ExecutorDispatcher}
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/2]
+ */
+public final class Dispatchers {
+
+    private static final String ANDROID_MAIN_DISPATCHER =
+            "com.scholar.livedatabus.liveevent.MainThreadManager";
+    private static final Object sLock = new Object();
+    @Nullable
+    private static volatile Dispatcher sDefault;
+    @Nullable
+    private static volatile Executor sBackgroundExecutor;
+    @Nullable
+    private static volatile Executor sAsyncExecutor;
+
+    private Dispatchers() {
+    }
+
+    /**
+     * 设置默认的Dispatcher，需要在第一次分发事件之前调用
+     *
+     * @param dispatcher the dispatcher
+     */
+    public static void setDefault(@NonNull Dispatcher dispatcher) {
+        sDefault = dispatcher;
+    }
+
+    /**
+     * 平台模块注册自己的默认Dispatcher，已经设置过时不覆盖
+     */
+    static void setPlatformDefault(@NonNull Dispatcher dispatcher) {
+        synchronized (sLock) {
+            if (sDefault == null) {
+                sDefault = dispatcher;
+            }
+        }
+    }
+
+    @NonNull
+    public static Dispatcher getDefault() {
+        Dispatcher dispatcher = sDefault;
+        if (dispatcher == null) {
+            synchronized (sLock) {
+                dispatcher = sDefault;
+                if (dispatcher == null) {
+                    dispatcher = loadPlatformDefault();
+                    sDefault = dispatcher;
+                }
+            }
+        }
+        return dispatcher;
+    }
+
+    /**
+     * 替换{@link ThreadMode#BACKGROUND}观察者使用的Executor，必须是串行的
+     *
+     * @param executor the executor
+     */
+    public static void setBackgroundExecutor(@NonNull Executor executor) {
+        sBackgroundExecutor = executor;
+    }
+
+    /**
+     * @return {@link ThreadMode#BACKGROUND}观察者使用的串行Executor，默认是一个单线程
+     */
+    @NonNull
+    public static Executor getBackgroundExecutor() {
+        Executor executor = sBackgroundExecutor;
+        if (executor == null) {
+            synchronized (sLock) {
+                executor = sBackgroundExecutor;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadExecutor(
+                            new NamedThreadFactory("LiveEventBus-background"));
+                    sBackgroundExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 替换{@link ThreadMode#ASYNC}观察者使用的Executor
+     *
+     * @param executor the executor
+     */
+    public static void setAsyncExecutor(@NonNull Executor executor) {
+        sAsyncExecutor = executor;
+    }
+
+    /**
+     * @return {@link ThreadMode#ASYNC}观察者使用的线程池，默认是按需创建线程的缓存线程池
+     */
+    @NonNull
+    public static Executor getAsyncExecutor() {
+        Executor executor = sAsyncExecutor;
+        if (executor == null) {
+            synchronized (sLock) {
+                executor = sAsyncExecutor;
+                if (executor == null) {
+                    executor = Executors.newCachedThreadPool(
+                            new NamedThreadFactory("LiveEventBus-async"));
+                    sAsyncExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static Dispatcher loadPlatformDefault() {
+        try {
+            Class<?> clazz = Class.forName(ANDROID_MAIN_DISPATCHER);
+            return (Dispatcher) clazz.getMethod("getInstance").invoke(null);
+        } catch (Exception e) {
+            throw new IllegalStateException("No default Dispatcher, call"
+                    + " Dispatchers.setDefault() before dispatching events", e);
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            Thread thread = new Thread(r, mName + "-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+
+/**
+ * double类型的事件，发布和分发都不装箱，用于高频的计数、进度、时间戳等
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/2]
+ */
+public class DoubleLiveEvent extends PrimitiveLiveEvent<DoubleLiveEventObserver> {
+
+    private volatile double mValue;
+    //待分发的值，与mDraining交替使用避免每次分配
+    private double[] mPending = new double[INITIAL_PENDING_CAPACITY];
+    private double[] mDraining = new double[INITIAL_PENDING_CAPACITY];
+    private int mPendingCount;
+
+    public DoubleLiveEvent() {
+        this(null, null);
+    }
+
+    public DoubleLiveEvent(@Nullable Object key, @Nullable Dispatcher dispatcher) {
+        super(key, dispatcher);
+    }
+
+    /**
+     * @return 当前值，没有发布过值时返回0d
+     */
+    public double getValue() {
+        return mValue;
+    }
+
+    @MainThread
+    public void setValue(double value) {
+        assertDispatchThread("setValue");
+        mValue = value;
+        publish();
+    }
+
+    public void postValue(double value) {
+        boolean postTask;
+        synchronized (mPendingLock) {
+            postTask = mPendingCount == 0;
+            if (isConflating()) {
+                mPending[0] = value;
+                mPendingCount = 1;
+            } else {
+                if (mPendingCount == mPending.length) {
+                    double[] grown = new double[mPendingCount * 2];
+                    System.arraycopy(mPending, 0, grown, 0, mPendingCount);
+                    mPending = grown;
+                }
+                mPending[mPendingCount++] = value;
+            }
+        }
+        if (postTask) {
+            scheduleDrain();
+        }
+    }
+
+    @MainThread
+    public void resumeDispatch(double value) {
+        assertDispatchThread("resumeDispatch");
+        if (hasValue() && Double.compare(mValue, value) == 0) {
+            resume();
+        }
+    }
+
+    @Override
+    protected void drainPending() {
+        double[] values;
+        int count;
+        synchronized (mPendingLock) {
+            values = mPending;
+            count = mPendingCount;
+            if (mDraining.length < values.length) {
+                mDraining = new double[values.length];
+            }
+            mPending = mDraining;
+            mDraining = values;
+            mPendingCount = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            mValue = values[i];
+            publish();
+        }
+    }
+
+    @Override
+    protected boolean deliver(@NonNull DoubleLiveEventObserver observer) {
+        return observer.onChanged(mValue);
+    }
+}
@@ -0,0 +1,18 @@
+package com.scholar.livedatabus.liveevent;
+
+
+/**
+ * {@link DoubleLiveEvent}的观察者，回调参数是不装箱的double
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/2]
+ */
+public interface DoubleLiveEventObserver {
+    /**
+     * Called when the data is changed.
+     *
+     * @param value The new data
+     * @return is the data  consumed
+     */
+    boolean onChanged(double value);
+}
@@ -0,0 +1,20 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.Nullable;
+
+
+/**
+ * {@link TransformedLiveEvent}的转换函数，在分发线程上调用
+ *
+ * @param <I> 输入类型
+ * @param <O> 输出类型
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public interface EventFunction<I, O> {
+    /**
+     * @param input 上游的值
+     * @return 转换之后的值
+     */
+    O apply(@Nullable I input);
+}
@@ -0,0 +1,19 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.Nullable;
+
+
+/**
+ * {@link TransformedLiveEvent}的过滤条件，在分发线程上调用
+ *
+ * @param <T> 事件类型
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public interface EventPredicate<T> {
+    /**
+     * @param value 上游的值
+     * @return 是否保留这个值
+     */
+    boolean test(@Nullable T value);
+}
@@ -0,0 +1,184 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 所有限流视图共享的定时器：一个后台线程加一个按截止时间排序的最小堆。
+ * 堆里的节点就是{@link Entry}本身，重复调度只是修改截止时间并调整位置，不分配任何对象。
+ * 到期的回调在定时器线程上执行，需要自己切换到分发线程
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+final class EventTimer {
+
+    private static final EventTimer INSTANCE = new EventTimer();
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Object mLock = new Object();
+    //以下由mLock保护
+    private Entry[] mHeap = new Entry[INITIAL_CAPACITY];
+    private int mSize;
+    private Thread mThread;
+
+    private EventTimer() {
+    }
+
+    @NonNull
+    static EventTimer getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 在deadlineNanos（{@link System#nanoTime()}）到期时回调{@link Entry#onTimer()}，
+     * 已经调度过的节点改为新的截止时间
+     */
+    void schedule(@NonNull Entry entry, long deadlineNanos) {
+        synchronized (mLock) {
+            int index = entry.mHeapIndex;
+            if (index < 0) {
+                if (mSize == mHeap.length) {
+                    mHeap = Arrays.copyOf(mHeap, mSize * 2);
+                }
+                index = mSize++;
+                mHeap[index] = entry;
+                entry.mHeapIndex = index;
+                entry.mDeadlineNanos = deadlineNanos;
+                siftUp(index);
+            } else {
+                long previous = entry.mDeadlineNanos;
+                entry.mDeadlineNanos = deadlineNanos;
+                if (deadlineNanos - previous < 0) {
+                    siftUp(index);
+                } else {
+                    siftDown(index);
+                }
+            }
+            if (mHeap[0] == entry) {
+                wakeLocked();
+            }
+        }
+    }
+
+    void cancel(@NonNull Entry entry) {
+        synchronized (mLock) {
+            if (entry.mHeapIndex >= 0) {
+                removeAtLocked(entry.mHeapIndex);
+            }
+        }
+    }
+
+    private void wakeLocked() {
+        if (mThread == null) {
+            mThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    loop();
+                }
+            }, "LiveEventBus-timer");
+            mThread.setDaemon(true);
+            mThread.start();
+        } else {
+            mLock.notify();
+        }
+    }
+
+    private void loop() {
+        for (; ; ) {
+            Entry expired;
+            synchronized (mLock) {
+                try {
+                    if (mSize == 0) {
+                        mLock.wait();
+                        continue;
+                    }
+                    long delay = mHeap[0].mDeadlineNanos - System.nanoTime();
+                    if (delay > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(mLock, delay);
+                        continue;
+                    }
+                } catch (InterruptedException e) {
+                    //守护线程，不响应中断
+                    continue;
+                }
+                expired = mHeap[0];
+                removeAtLocked(0);
+            }
+            try {
+                expired.onTimer();
+            } catch (RuntimeException e) {
+                //某个视图的Dispatcher已经关闭时不影响其他视图
+            }
+        }
+    }
+
+    private void removeAtLocked(int index) {
+        Entry removed = mHeap[index];
+        removed.mHeapIndex = -1;
+        int last = --mSize;
+        if (index != last) {
+            Entry moved = mHeap[last];
+            mHeap[index] = moved;
+            moved.mHeapIndex = index;
+            siftDown(index);
+            if (mHeap[index] == moved) {
+                siftUp(index);
+            }
+        }
+        mHeap[last] = null;
+    }
+
+    private void siftUp(int index) {
+        Entry entry = mHeap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            Entry parentEntry = mHeap[parent];
+            if (entry.mDeadlineNanos - parentEntry.mDeadlineNanos >= 0) {
+                break;
+            }
+            mHeap[index] = parentEntry;
+            parentEntry.mHeapIndex = index;
+            index = parent;
+        }
+        mHeap[index] = entry;
+        entry.mHeapIndex = index;
+    }
+
+    private void siftDown(int index) {
+        Entry entry = mHeap[index];
+        int half = mSize >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < mSize && mHeap[right].mDeadlineNanos - mHeap[child].mDeadlineNanos < 0) {
+                child = right;
+            }
+            Entry childEntry = mHeap[child];
+            if (entry.mDeadlineNanos - childEntry.mDeadlineNanos <= 0) {
+                break;
+            }
+            mHeap[index] = childEntry;
+            childEntry.mHeapIndex = index;
+            index = child;
+        }
+        mHeap[index] = entry;
+        entry.mHeapIndex = index;
+    }
+
+    /**
+     * 定时器节点，同一个节点同时最多调度一次
+     */
+    abstract static class Entry {
+        //以下由EventTimer.mLock保护
+        long mDeadlineNanos;
+        int mHeapIndex = -1;
+
+        /**
+         * 在定时器线程上回调，不要在这里做耗时的事情
+         */
+        abstract void onTimer();
+    }
+}
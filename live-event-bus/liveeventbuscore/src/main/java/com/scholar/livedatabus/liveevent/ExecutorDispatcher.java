@@ -0,0 +1,54 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+
+/**
+ * 基于单线程Executor的{@link Dispatcher}，用于在普通JVM（服务端、基准测试）上运行事件总线。
+ * 它自己持有的那个线程就是分发线程。
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/2]
+ */
+public class ExecutorDispatcher implements Dispatcher {
+
+    private final ExecutorService mExecutor;
+    private volatile Thread mThread;
+
+    public ExecutorDispatcher() {
+        this("LiveEventBus-dispatcher");
+    }
+
+    public ExecutorDispatcher(@NonNull final String threadName) {
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                mThread = thread;
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public boolean isDispatchThread() {
+        return Thread.currentThread() == mThread;
+    }
+
+    @Override
+    public void post(@NonNull Runnable runnable) {
+        mExecutor.execute(runnable);
+    }
+
+    /**
+     * 停止分发线程，已经post的任务仍会执行完
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+}
@@ -0,0 +1,97 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+
+/**
+ * int类型的事件，发布和分发都不装箱，用于高频的计数、进度、时间戳等
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/2]
+ */
+public class IntLiveEvent extends PrimitiveLiveEvent<IntLiveEventObserver> {
+
+    private volatile int mValue;
+    //待分发的值，与mDraining交替使用避免每次分配
+    private int[] mPending = new int[INITIAL_PENDING_CAPACITY];
+    private int[] mDraining = new int[INITIAL_PENDING_CAPACITY];
+    private int mPendingCount;
+
+    public IntLiveEvent() {
+        this(null, null);
+    }
+
+    public IntLiveEvent(@Nullable Object key, @Nullable Dispatcher dispatcher) {
+        super(key, dispatcher);
+    }
+
+    /**
+     * @return 当前值，没有发布过值时返回0
+     */
+    public int getValue() {
+        return mValue;
+    }
+
+    @MainThread
+    public void setValue(int value) {
+        assertDispatchThread("setValue");
+        mValue = value;
+        publish();
+    }
+
+    public void postValue(int value) {
+        boolean postTask;
+        synchronized (mPendingLock) {
+            postTask = mPendingCount == 0;
+            if (isConflating()) {
+                mPending[0] = value;
+                mPendingCount = 1;
+            } else {
+                if (mPendingCount == mPending.length) {
+                    int[] grown = new int[mPendingCount * 2];
+                    System.arraycopy(mPending, 0, grown, 0, mPendingCount);
+                    mPending = grown;
+                }
+                mPending[mPendingCount++] = value;
+            }
+        }
+        if (postTask) {
+            scheduleDrain();
+        }
+    }
+
+    @MainThread
+    public void resumeDispatch(int value) {
+        assertDispatchThread("resumeDispatch");
+        if (hasValue() && mValue == value) {
+            resume();
+        }
+    }
+
+    @Override
+    protected void drainPending() {
+        int[] values;
+        int count;
+        synchronized (mPendingLock) {
+            values = mPending;
+            count = mPendingCount;
+            if (mDraining.length < values.length) {
+                mDraining = new int[values.length];
+            }
+            mPending = mDraining;
+            mDraining = values;
+            mPendingCount = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            mValue = values[i];
+            publish();
+        }
+    }
+
+    @Override
+    protected boolean deliver(@NonNull IntLiveEventObserver observer) {
+        return observer.onChanged(mValue);
+    }
+}
@@ -0,0 +1,1320 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.scholar.livedatabus.liveevent;
+
+import android.arch.lifecycle.GenericLifecycleObserver;
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleOwner;
+import android.support.annotation.IntDef;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Map;
+
+import static android.arch.lifecycle.Lifecycle.State.CREATED;
+import static android.arch.lifecycle.Lifecycle.State.DESTROYED;
+
+/**
+ */
+public abstract class LiveEvent<T> {
+    public static final int DEFAULT_PRIORITY = 0x10;
+    /**
+     * postValue默认模式：每次调用都单独post一个任务到主线程，每个值各自分发一次
+     */
+    public static final int POST_MODE_EACH = 0;
+    /**
+     * 合并模式：只保留一个待分发的值，主线程上最多只有一个待执行的任务，执行时分发最新的值
+     */
+    public static final int POST_MODE_CONFLATE = 1;
+    /**
+     * 批量模式：所有值按顺序排队，由同一个主线程任务一次性按序分发
+     */
+    public static final int POST_MODE_DELIVER_ALL = 2;
+    /**
+     * 事件队列满时丢弃最早的事件
+     */
+    public static final int OVERFLOW_DROP_OLDEST = 0;
+    /**
+     * 事件队列满时丢弃新来的事件
+     */
+    public static final int OVERFLOW_DROP_NEWEST = 1;
+    /**
+     * 事件队列满时新事件覆盖队尾的事件，即只保留最近的一个未分发事件
+     */
+    public static final int OVERFLOW_CONFLATE = 2;
+    /**
+     * 只用于{@link PostBudget}：超出预算时阻塞调用postValue的线程，超时后丢弃
+     */
+    public static final int OVERFLOW_BLOCK = 3;
+    private static final int MAX_POST_VALUE_TASK_POOL_SIZE = 32;
+    static final int START_VERSION = -1;
+    private static final Object NOT_SET = new Object();
+    @Nullable
+    private static volatile DispatchTracer sDispatchTracer;
+    private static volatile SlowObserverWatchdog sSlowObserverWatchdog;
+    @Nullable
+    private final Object mKey;
+    //没有key时统计使用的描述，第一次用到时生成
+    private String mDescriptor;
+    @Nullable
+    private final Dispatcher mDispatcher;
+    private FastSafeIterableMap<LiveEventObserver<T>, ObserverWrapper> mObservers =
+            new FastSafeIterableMap<>();
+    private final SafeIterableMap<LiveEventObserver<T>, ObserverWrapper>.IteratorWithAdditions
+            mDispatchIterator = mObservers.iteratorWithAdditions();
+
+    // how many observers are in active state
+    private int mActiveCount = 0;
+    //直接保存事件本身和版本号，setValue不需要分配包装对象
+    private volatile Object mData = NOT_SET;
+    private int mVersion = START_VERSION;//全局的计数器，保证所有的事件id递增
+    //已经回调过onValueDispatched的版本，只在分发线程上读写
+    private int mDispatchedVersion = START_VERSION;
+    // 同时每个事件应该有一个id，所有观察者如果低于这个id表示没有处理过该事件
+
+    private final Object mPendingLock = new Object();
+    private volatile int mPostMode = POST_MODE_EACH;
+    //POST_MODE_CONFLATE下待分发的值
+    private Object mPendingData = NOT_SET;
+    //POST_MODE_DELIVER_ALL下待分发的值，与mDrainingValues交替使用避免每次分配
+    private ArrayList<Object> mPendingValues = new ArrayList<>();
+    private ArrayList<Object> mDrainingValues = new ArrayList<>();
+    private final Runnable mConflatedPostTask = new ConflatedPostTask();
+    private final Runnable mDrainPostTask = new DrainPostTask();
+    //POST_MODE_EACH下回收的post任务，和Message.obtain()一样用链表做对象池
+    private PostValueTask mPostValueTaskPool;
+    private int mPostValueTaskPoolSize;
+    //POST_MODE_EACH下的背压，见setPostBudget；受预算限制时待执行的任务按序取环形数组中的值
+    private volatile PostBudget mPostBudget;
+    private volatile PostBudget mSharedPostBudget;
+    private Object[] mBudgetedValues;
+    private int mBudgetedHead;
+    private int mBudgetedSize;
+    private final Runnable mBudgetedPostTask = new BudgetedPostTask();
+
+    //分发期间重入setValue的事件队列，环形数组，为null表示不启用
+    private Object[] mEventQueue;
+    private int mEventQueueHead;
+    private int mEventQueueSize;
+    private int mOverflowPolicy = OVERFLOW_DROP_OLDEST;
+    private int mDroppedEventCount;
+
+    //弱引用观察者被回收后进入队列，在分发线程上移除，第一次弱引用注册时创建
+    private ReferenceQueue<LiveEventObserver<T>> mReferenceQueue;
+    private int mReapedObserverCount;
+
+    private boolean mDispatchingValue;
+    @SuppressWarnings("FieldCanBeLocal")
+    private boolean mDispatchInvalidated;
+
+    protected LiveEvent() {
+        this(null);
+    }
+
+    /**
+     * @param key 事件的key，用于{@link DispatchTracer}区分不同的事件
+     */
+    protected LiveEvent(@Nullable Object key) {
+        this(key, null);
+    }
+
+    /**
+     * @param key        事件的key，用于{@link DispatchTracer}区分不同的事件
+     * @param dispatcher 分发线程，传null使用{@link Dispatchers#getDefault()}
+     */
+    protected LiveEvent(@Nullable Object key, @Nullable Dispatcher dispatcher) {
+        mKey = key;
+        mDispatcher = dispatcher;
+    }
+
+    /**
+     * 全局安装分发追踪器，传null卸载
+     *
+     * @param tracer the tracer
+     */
+    public static void setDispatchTracer(@Nullable DispatchTracer tracer) {
+        sDispatchTracer = tracer;
+    }
+
+    @Nullable
+    public static DispatchTracer getDispatchTracer() {
+        return sDispatchTracer;
+    }
+
+    /**
+     * 全局安装慢观察者看门狗，传null卸载
+     */
+    public static void setSlowObserverWatchdog(@Nullable SlowObserverWatchdog watchdog) {
+        sSlowObserverWatchdog = watchdog;
+    }
+
+    @Nullable
+    public static SlowObserverWatchdog getSlowObserverWatchdog() {
+        return sSlowObserverWatchdog;
+    }
+
+    /**
+     * @return 事件的key，构造时没有指定key则返回null
+     */
+    @Nullable
+    public Object getKey() {
+        return mKey;
+    }
+
+    /**
+     * 分发追踪和看门狗会一直保存按key的统计，没有key时用类名和identityHashCode描述，不引用这个LiveEvent
+     */
+    private Object statisticsKey() {
+        if (mKey != null) {
+            return mKey;
+        }
+        String descriptor = mDescriptor;
+        if (descriptor == null) {
+            descriptor = getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(this));
+            mDescriptor = descriptor;
+        }
+        return descriptor;
+    }
+
+    /**
+     * @return 事件的分发线程，没有指定时使用默认的Dispatcher
+     */
+    @NonNull
+    protected Dispatcher getDispatcher() {
+        Dispatcher dispatcher = mDispatcher;
+        return dispatcher != null ? dispatcher : Dispatchers.getDefault();
+    }
+
+    private void assertDispatchThread(String methodName) {
+        if (!getDispatcher().isDispatchThread()) {
+            throw new IllegalStateException("Cannot invoke " + methodName + " on a background"
+                    + " thread");
+        }
+    }
+
+    /**
+     * 判断是否应该通知观察者
+     *
+     * @param observer 观察者
+     * @return 观察者是否消费了事件
+     */
+    private boolean considerNotify(ObserverWrapper observer) {
+        if (!observer.mActive) {
+            traceSkippedInactive(observer);
+            return false;
+        }
+        // Check latest state b4 dispatch. Maybe it changed state but we didn't get the event yet.
+        //
+        // we still first check observer.active to keep it as the entrance for events. So even if
+        // the observer moved to an active state, if we've not received that event, we better not
+        // notify for a more predictable notification order.
+        if (!observer.shouldBeActive()) {
+            observer.activeStateChanged(false);
+            traceSkippedInactive(observer);
+            return false;
+        }
+        Object rawData = mData;
+        if (rawData == NOT_SET || observer.mLastVersion >= mVersion) {
+            return false;
+        }
+
+        observer.mLastVersion = mVersion;
+        //noinspection unchecked
+        T data = (T) rawData;
+        switch (observer.mThreadMode) {
+            case BACKGROUND:
+                Dispatchers.getBackgroundExecutor().execute(new DeliveryTask(observer, data));
+                return false;
+            case ASYNC:
+                Dispatchers.getAsyncExecutor().execute(new DeliveryTask(observer, data));
+                return false;
+            case RELOCATABLE:
+                if (observer.mRelocated) {
+                    Dispatchers.getBackgroundExecutor().execute(new DeliveryTask(observer, data));
+                    return false;
+                }
+                return notifyObserver(observer, data, true);
+            default:
+                return notifyObserver(observer, data, true);
+        }
+    }
+
+    /**
+     * @param synchronous 在分发线程上同步回调，只有这种回调由看门狗计时
+     */
+    private boolean notifyObserver(ObserverWrapper observer, T data, boolean synchronous) {
+        DispatchTracer tracer = sDispatchTracer;
+        SlowObserverWatchdog watchdog = synchronous ? sSlowObserverWatchdog : null;
+        if (tracer == null && watchdog == null) {
+            return observer.mObserver.onChanged(data);
+        }
+        Object key = statisticsKey();
+        if (tracer != null) {
+            tracer.onNotifyStart(key, observer.mObserver, observer.mPriority);
+        }
+        long start = System.nanoTime();
+        boolean consumed;
+        try {
+            consumed = observer.mObserver.onChanged(data);
+        } finally {
+            long duration = System.nanoTime() - start;
+            if (tracer != null) {
+                tracer.onNotifyEnd(key, observer.mObserver, duration);
+            }
+            if (watchdog != null && duration > watchdog.getFrameBudgetNanos()) {
+                onSlowObserver(watchdog, observer, duration);
+            }
+        }
+        if (consumed && tracer != null) {
+            tracer.onConsumed(key, observer.mObserver);
+        }
+        return consumed;
+    }
+
+    private void onSlowObserver(SlowObserverWatchdog watchdog, ObserverWrapper observer, long durationNanos) {
+        boolean relocated = observer.mThreadMode == ThreadMode.RELOCATABLE
+                && ++observer.mSlowCount >= watchdog.getRelocateThreshold();
+        if (relocated) {
+            observer.mRelocated = true;
+        }
+        watchdog.record(statisticsKey(), observer.mObserver, durationNanos, relocated);
+    }
+
+    private void traceSkippedInactive(ObserverWrapper observer) {
+        DispatchTracer tracer = sDispatchTracer;
+        if (tracer != null) {
+            tracer.onSkippedInactive(statisticsKey(), observer.mObserver);
+        }
+    }
+
+    /**
+     * 按序遍历，通知所有观察者，如果有观察者消费了事件，遍历会被中断
+     *
+     * @param initiator
+     */
+    private void dispatchingValue(@Nullable ObserverWrapper initiator) {
+        if (mDispatchingValue) {
+            mDispatchInvalidated = true;
+            return;
+        }
+        if (mReferenceQueue != null) {
+            reapObservers();
+        }
+        mDispatchingValue = true;
+        //观察者或者onValueDispatched抛出异常时也要复位，否则这个事件之后的分发都会被当作重入而丢弃
+        try {
+            for (; ; ) {
+                do {
+                    mDispatchInvalidated = false;
+                    if (initiator != null) {
+                        considerNotify(initiator);
+                        initiator = null;
+                    } else {
+                        //分发不会重入，复用同一个迭代器避免每次分发都分配
+                        SafeIterableMap<LiveEventObserver<T>, ObserverWrapper>.IteratorWithAdditions iterator =
+                                mDispatchIterator;
+                        iterator.reset();
+                        while (iterator.hasNext()) {
+                            if (considerNotify(iterator.next().getValue()) || mDispatchInvalidated) {
+                                break;
+                            }
+                        }
+                        //不再持有已经遍历过的节点
+                        iterator.reset();
+                    }
+                } while (mDispatchInvalidated);
+                //只有新的值才回调，观察者变为活跃引起的补发不算
+                if (mVersion != mDispatchedVersion) {
+                    mDispatchedVersion = mVersion;
+                    Object rawData = mData;
+                    if (rawData != NOT_SET) {
+                        //noinspection unchecked
+                        onValueDispatched((T) rawData);
+                    }
+                    if (mDispatchInvalidated) {
+                        //回调中又更新了值
+                        continue;
+                    }
+                }
+                //启用事件队列时，分发期间重入的事件在当前事件分发完之后按序分发
+                if (mEventQueueSize == 0) {
+                    break;
+                }
+                updateValue(pollQueuedEvent());
+            }
+        } finally {
+            mDispatchingValue = false;
+        }
+    }
+
+    /**
+     * Adds the given observer to the observers list within the lifespan of the given
+     * owner. The events are dispatched on the main thread. If LiveData already has data
+     * set, it will be delivered to the observer.
+     * <p>
+     * The observer will only receive events if the owner is in {@link Lifecycle.State#STARTED}
+     * or {@link Lifecycle.State#RESUMED} state (active).
+     * <p>
+     * If the owner moves to the {@link Lifecycle.State#DESTROYED} state, the observer will
+     * automatically be removed.
+     * <p>
+     * When data changes while the {@code owner} is not active, it will not receive any updates.
+     * If it becomes active again, it will receive the last available data automatically.
+     * <p>
+     * LiveData keeps a strong reference to the observer and the owner as long as the
+     * given LifecycleOwner is not destroyed. When it is destroyed, LiveData removes references to
+     * the observer &amp; the owner.
+     * <p>
+     * If the given owner is already in {@link Lifecycle.State#DESTROYED} state, LiveData
+     * ignores the call.
+     * <p>
+     * If the given owner, observer tuple is already in the list, the call is ignored.
+     * If the observer is already in the list with another owner, LiveData throws an
+     * {@link IllegalArgumentException}.
+     *
+     * @param owner    The LifecycleOwner which controls the observer
+     * @param observer The observer that will receive the events
+     */
+    @MainThread
+    public void observe(@NonNull LifecycleOwner owner, @NonNull LiveEventObserver<T> observer) {
+        observe(owner, observer, DEFAULT_PRIORITY);
+    }
+
+    @MainThread
+    public void observe(@NonNull LifecycleOwner owner, @NonNull LiveEventObserver<T> observer, int priority) {
+        observe(owner, observer, priority, ThreadMode.POSTING);
+    }
+
+    /**
+     * 同{@link #observe(LifecycleOwner, LiveEventObserver, int)}，并指定观察者回调所在的线程
+     *
+     * @param threadMode 回调线程，见{@link ThreadMode}
+     */
+    @MainThread
+    public void observe(@NonNull LifecycleOwner owner, @NonNull LiveEventObserver<T> observer, int priority,
+                        @NonNull ThreadMode threadMode) {
+        observeWithOwner(owner, observer, priority, threadMode, false);
+    }
+
+    @MainThread
+    public void observeSticky(@NonNull LifecycleOwner owner, @NonNull LiveEventObserver<T> observer) {
+        observeSticky(owner, observer, DEFAULT_PRIORITY);
+    }
+
+    @MainThread
+    public void observeSticky(@NonNull LifecycleOwner owner, @NonNull LiveEventObserver<T> observer, int priority) {
+        observeSticky(owner, observer, priority, ThreadMode.POSTING);
+    }
+
+    @MainThread
+    public void observeSticky(@NonNull LifecycleOwner owner, @NonNull LiveEventObserver<T> observer, int priority,
+                              @NonNull ThreadMode threadMode) {
+        observeWithOwner(owner, observer, priority, threadMode, true);
+    }
+
+    private void observeWithOwner(@NonNull LifecycleOwner owner, @NonNull LiveEventObserver<T> observer,
+                                  int priority, @NonNull ThreadMode threadMode, boolean sticky) {
+        if (owner.getLifecycle().getCurrentState() == DESTROYED) {
+            // ignore
+            return;
+        }
+        LifecycleBoundObserver wrapper = new LifecycleBoundObserver(owner, observer);
+        wrapper.mPriority = priority;
+        wrapper.mThreadMode = threadMode;
+        if (!sticky) {
+            wrapper.mLastVersion = getVersion();
+        }
+        ObserverWrapper existing = mObservers.putIfAbsent(observer, wrapper, priority);
+        if (existing != null && !existing.isAttachedTo(owner)) {
+            throw new IllegalArgumentException("Cannot add the same observer"
+                    + " with different lifecycles");
+        }
+        if (existing != null) {
+            return;
+        }
+        owner.getLifecycle().addObserver(wrapper);
+        onObserversChanged();
+    }
+
+    /**
+     * Adds the given observer to the observers list. This call is similar to
+     * {@link LiveEvent#observe(LifecycleOwner, LiveEventObserver)} with a LifecycleOwner, which
+     * is always active. This means that the given observer will receive all events and will never
+     * be automatically removed. You should manually call {@link #removeObserver(LiveEventObserver)} to stop
+     * observing this LiveData.
+     * While LiveData has one of such observers, it will be considered
+     * as active.
+     * <p>
+     * If the observer was already added with an owner to this LiveData, LiveData throws an
+     * {@link IllegalArgumentException}.
+     *
+     * @param observer The observer that will receive the events
+     */
+    @MainThread
+    public void observeForever(@NonNull LiveEventObserver<T> observer) {
+        observeForever(observer, DEFAULT_PRIORITY);
+    }
+
+    @MainThread
+    public void observeForever(@NonNull LiveEventObserver<T> observer, int priority) {
+        observeForever(observer, priority, ThreadMode.POSTING);
+    }
+
+    /**
+     * 同{@link #observeForever(LiveEventObserver, int)}，并指定观察者回调所在的线程
+     *
+     * @param threadMode 回调线程，见{@link ThreadMode}
+     */
+    @MainThread
+    public void observeForever(@NonNull LiveEventObserver<T> observer, int priority,
+                               @NonNull ThreadMode threadMode) {
+        observeAlwaysActive(observer, priority, threadMode, false);
+    }
+
+    @MainThread
+    public void observeStickyForever(@NonNull LiveEventObserver<T> observer) {
+        observeStickyForever(observer, DEFAULT_PRIORITY);
+    }
+
+    @MainThread
+    public void observeStickyForever(@NonNull LiveEventObserver<T> observer, int priority) {
+        observeStickyForever(observer, priority, ThreadMode.POSTING);
+    }
+
+    @MainThread
+    public void observeStickyForever(@NonNull LiveEventObserver<T> observer, int priority,
+                                     @NonNull ThreadMode threadMode) {
+        observeAlwaysActive(observer, priority, threadMode, true);
+    }
+
+    /**
+     * 同{@link #observeForever(LiveEventObserver)}，但只持有观察者的弱引用，
+     * 观察者被回收后自动移除，忘记调用{@link #removeObserver(LiveEventObserver)}也不会泄漏。
+     * 调用方需要自己持有观察者，例如作为Activity或Presenter的成员，不要传匿名类。
+     * <p>
+     * 被回收的观察者在下一次分发或注册时移除，移除的个数见{@link #getReapedObserverCount()}
+     */
+    @MainThread
+    public void observeForeverWeakly(@NonNull LiveEventObserver<T> observer) {
+        observeForeverWeakly(observer, DEFAULT_PRIORITY);
+    }
+
+    @MainThread
+    public void observeForeverWeakly(@NonNull LiveEventObserver<T> observer, int priority) {
+        observeForeverWeakly(observer, priority, ThreadMode.POSTING);
+    }
+
+    @MainThread
+    public void observeForeverWeakly(@NonNull LiveEventObserver<T> observer, int priority,
+                                     @NonNull ThreadMode threadMode) {
+        observeWeakly(observer, priority, threadMode, false);
+    }
+
+    /**
+     * 粘性的{@link #observeForeverWeakly(LiveEventObserver)}
+     */
+    @MainThread
+    public void observeStickyForeverWeakly(@NonNull LiveEventObserver<T> observer) {
+        observeStickyForeverWeakly(observer, DEFAULT_PRIORITY);
+    }
+
+    @MainThread
+    public void observeStickyForeverWeakly(@NonNull LiveEventObserver<T> observer, int priority) {
+        observeStickyForeverWeakly(observer, priority, ThreadMode.POSTING);
+    }
+
+    @MainThread
+    public void observeStickyForeverWeakly(@NonNull LiveEventObserver<T> observer, int priority,
+                                           @NonNull ThreadMode threadMode) {
+        observeWeakly(observer, priority, threadMode, true);
+    }
+
+    private void observeWeakly(@NonNull LiveEventObserver<T> observer, int priority,
+                               @NonNull ThreadMode threadMode, boolean sticky) {
+        assertDispatchThread("observeForeverWeakly");
+        if (mReferenceQueue == null) {
+            mReferenceQueue = new ReferenceQueue<>();
+        } else {
+            reapObservers();
+        }
+        observeAlwaysActive(new WeakObserver<>(observer, mReferenceQueue), priority, threadMode, sticky);
+    }
+
+    /**
+     * 移除已经被回收的弱引用观察者，只在分发线程上调用
+     */
+    private void reapObservers() {
+        Reference<? extends LiveEventObserver<T>> reference;
+        while ((reference = mReferenceQueue.poll()) != null) {
+            //WeakObserver本身就是注册时的key
+            //noinspection unchecked
+            if (removeWrapper((LiveEventObserver<T>) reference) != null) {
+                mReapedObserverCount++;
+            }
+        }
+    }
+
+    /**
+     * @return 因为观察者被回收而自动移除的弱引用观察者个数，用于排查忘记注销的观察者
+     */
+    public int getReapedObserverCount() {
+        return mReapedObserverCount;
+    }
+
+    private void observeAlwaysActive(@NonNull LiveEventObserver<T> observer, int priority,
+                                     @NonNull ThreadMode threadMode, boolean sticky) {
+        AlwaysActiveObserver wrapper = new AlwaysActiveObserver(observer);
+        wrapper.mPriority = priority;
+        wrapper.mThreadMode = threadMode;
+        if (!sticky) {
+            wrapper.mLastVersion = getVersion();
+        }
+        ObserverWrapper existing = mObservers.putIfAbsent(observer, wrapper, priority);
+        if (existing != null && existing instanceof LiveEvent.LifecycleBoundObserver) {
+            throw new IllegalArgumentException("Cannot add the same observer"
+                    + " with different lifecycles");
+        }
+        if (existing != null) {
+            return;
+        }
+        wrapper.activeStateChanged(true);
+        onObserversChanged();
+    }
+
+    /**
+     * Removes the given observer from the observers list.
+     *
+     * @param observer The Observer to receive events.
+     */
+    @MainThread
+    public void removeObserver(@NonNull final LiveEventObserver<T> observer) {
+        assertDispatchThread("removeObserver");
+        if (removeWrapper(observer) == null && mReferenceQueue != null) {
+            //可能是以弱引用注册的，用同样equals的弱引用查找
+            removeWrapper(new WeakObserver<>(observer, null));
+        }
+    }
+
+    private ObserverWrapper removeWrapper(@NonNull LiveEventObserver<T> observer) {
+        ObserverWrapper removed = mObservers.remove(observer);
+        if (removed == null) {
+            return null;
+        }
+        removed.detachObserver();
+        removed.activeStateChanged(false);
+        onObserversChanged();
+        return removed;
+    }
+
+    /**
+     * Removes all observers that are tied to the given {@link LifecycleOwner}.
+     *
+     * @param owner The {@code LifecycleOwner} scope for the observers to be removed.
+     */
+    @SuppressWarnings("WeakerAccess")
+    @MainThread
+    public void removeObservers(@NonNull final LifecycleOwner owner) {
+        assertDispatchThread("removeObservers");
+        for (Map.Entry<LiveEventObserver<T>, ObserverWrapper> entry : mObservers) {
+            if (entry.getValue().isAttachedTo(owner)) {
+                removeObserver(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Posts a task to a main thread to set the given value. So if you have a following code
+     * executed in the main thread:
+     * <pre class="prettyprint">
+     * liveData.postValue("a");
+     * liveData.setValue("b");
+     * </pre>
+     * The value "b" would be set at first and later the main thread would override it with
+     * the value "a".
+     * <p>
+     * How multiple calls before the main thread runs are handled depends on the post mode,
+     * see {@link #setPostMode(int)}.
+     *
+     * @param value The new value
+     */
+    public void postValue(T value) {
+        switch (mPostMode) {
+            case POST_MODE_CONFLATE: {
+                boolean postTask;
+                synchronized (mPendingLock) {
+                    postTask = mPendingData == NOT_SET;
+                    mPendingData = value;
+                }
+                if (postTask) {
+                    getDispatcher().post(mConflatedPostTask);
+                }
+                break;
+            }
+            case POST_MODE_DELIVER_ALL: {
+                boolean postTask;
+                synchronized (mPendingLock) {
+                    postTask = mPendingValues.isEmpty();
+                    mPendingValues.add(value);
+                }
+                if (postTask) {
+                    getDispatcher().post(mDrainPostTask);
+                }
+                break;
+            }
+            default:
+                if (mPostBudget != null || mSharedPostBudget != null) {
+                    postBudgeted(value);
+                } else {
+                    getDispatcher().post(obtainPostValueTask(value));
+                }
+                break;
+        }
+    }
+
+    /**
+     * 先占用本key的预算再占用共享的预算，都拿到之后才post任务；超出预算时按超出的那个预算的策略处理
+     */
+    private void postBudgeted(Object value) {
+        long deadline = 0;
+        for (; ; ) {
+            PostBudget exceeded = null;
+            synchronized (mPendingLock) {
+                PostBudget budget = mPostBudget;
+                PostBudget sharedBudget = mSharedPostBudget;
+                if (budget != null && !budget.tryAcquire()) {
+                    exceeded = budget;
+                } else if (sharedBudget != null && !sharedBudget.tryAcquire()) {
+                    if (budget != null) {
+                        budget.release();
+                    }
+                    exceeded = sharedBudget;
+                }
+                if (exceeded == null) {
+                    offerBudgetedValue(value);
+                } else if (exceeded.getOverflowPolicy() != OVERFLOW_BLOCK || getDispatcher().isDispatchThread()) {
+                    //被替换或者丢弃的值都计入丢弃
+                    exceeded.onDropped();
+                    if (mBudgetedSize > 0) {
+                        replaceBudgetedValue(exceeded.getOverflowPolicy(), value);
+                    }
+                    return;
+                }
+            }
+            if (exceeded == null) {
+                getDispatcher().post(mBudgetedPostTask);
+                return;
+            }
+            if (deadline == 0) {
+                exceeded.onBlocked();
+                deadline = System.nanoTime() + exceeded.getBlockTimeoutNanos();
+            }
+            if (!exceeded.awaitRelease(deadline)) {
+                exceeded.onDropped();
+                return;
+            }
+        }
+    }
+
+    private void offerBudgetedValue(Object value) {
+        Object[] values = mBudgetedValues;
+        if (values == null || mBudgetedSize == values.length) {
+            Object[] grown = new Object[values == null ? 8 : values.length * 2];
+            for (int i = 0; i < mBudgetedSize; i++) {
+                grown[i] = values[(mBudgetedHead + i) % values.length];
+            }
+            mBudgetedValues = values = grown;
+            mBudgetedHead = 0;
+        }
+        values[(mBudgetedHead + mBudgetedSize) % values.length] = value;
+        mBudgetedSize++;
+    }
+
+    /**
+     * 超出预算时替换本key未分发的值，不增加post任务
+     */
+    private void replaceBudgetedValue(int overflowPolicy, Object value) {
+        Object[] values = mBudgetedValues;
+        switch (overflowPolicy) {
+            case OVERFLOW_DROP_OLDEST:
+                values[mBudgetedHead] = null;
+                mBudgetedHead = (mBudgetedHead + 1) % values.length;
+                values[(mBudgetedHead + mBudgetedSize - 1) % values.length] = value;
+                break;
+            case OVERFLOW_CONFLATE:
+                values[(mBudgetedHead + mBudgetedSize - 1) % values.length] = value;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 限制本key已经post、还没有执行的postValue任务数，只对{@link #POST_MODE_EACH}生效，见{@link PostBudget}。
+     * 有未执行的任务时不能修改
+     *
+     * @param budget 本key的预算，传null不限制
+     */
+    public void setPostBudget(@Nullable PostBudget budget) {
+        synchronized (mPendingLock) {
+            assertNoBudgetedPosts();
+            mPostBudget = budget;
+        }
+    }
+
+    /**
+     * 和其他LiveEvent共享的预算，总线通过它限制所有key的未执行任务总数，和本key的预算同时生效
+     */
+    public void setSharedPostBudget(@Nullable PostBudget budget) {
+        synchronized (mPendingLock) {
+            assertNoBudgetedPosts();
+            mSharedPostBudget = budget;
+        }
+    }
+
+    @Nullable
+    public PostBudget getPostBudget() {
+        return mPostBudget;
+    }
+
+    private void assertNoBudgetedPosts() {
+        if (mBudgetedSize > 0) {
+            throw new IllegalStateException("Cannot change the post budget while posts are outstanding");
+        }
+    }
+
+    /**
+     * 设置postValue的模式
+     * <ul>
+     * <li>{@link #POST_MODE_EACH} 默认模式，每个值单独post一个主线程任务</li>
+     * <li>{@link #POST_MODE_CONFLATE} 主线程执行前的多次调用只分发最后一个值</li>
+     * <li>{@link #POST_MODE_DELIVER_ALL} 每个值都会被分发，但同一批值只占用一个主线程任务</li>
+     * </ul>
+     * 已经排队的值不受影响，仍按提交时的模式分发
+     *
+     * @param postMode the post mode
+     */
+    public void setPostMode(@PostMode int postMode) {
+        mPostMode = postMode;
+    }
+
+    /**
+     * Returns the current value.
+     * Note that calling this method on a background thread does not guarantee that the latest
+     * value set will be received.
+     *
+     * @return the current value
+     */
+    @Nullable
+    public T getValue() {
+        Object data = mData;
+        if (data != NOT_SET) {
+            //noinspection unchecked
+            return (T) data;
+        }
+        return null;
+    }
+
+    /**
+     * Sets the value. If there are active observers, the value will be dispatched to them.
+     * <p>
+     * This method must be called from the main thread. If you need set a value from a background
+     * thread, you can use {@link #postValue(Object)}
+     *
+     * @param value The new value
+     */
+    @MainThread
+    public void setValue(T value) {
+        assertDispatchThread("setValue");
+        if (mDispatchingValue && mEventQueue != null) {
+            offerQueuedEvent(value);
+            return;
+        }
+        updateValue(value);
+        dispatchingValue(null);
+    }
+
+    private void updateValue(Object value) {
+        mVersion++;
+        mData = value;
+        DispatchTracer tracer = sDispatchTracer;
+        if (tracer != null) {
+            tracer.onPublish(statisticsKey(), mVersion);
+        }
+    }
+
+    /**
+     * 启用有界的事件队列。默认情况下分发期间重入的setValue会用最新的值重新开始分发，
+     * 排在后面的观察者收不到中间的事件；启用后这些事件进入队列，
+     * 当前事件分发完之后再按序分发，保证每个活跃的观察者按顺序收到每个事件。
+     * <p>
+     * 队列是固定容量的环形数组，满了之后按溢出策略处理：
+     * <ul>
+     * <li>{@link #OVERFLOW_DROP_OLDEST} 丢弃最早的事件</li>
+     * <li>{@link #OVERFLOW_DROP_NEWEST} 丢弃新来的事件</li>
+     * <li>{@link #OVERFLOW_CONFLATE} 新事件覆盖队尾的事件</li>
+     * </ul>
+     *
+     * @param capacity       队列容量，小于等于0表示关闭队列
+     * @param overflowPolicy 溢出策略
+     */
+    @MainThread
+    public void setEventQueue(int capacity, @OverflowPolicy int overflowPolicy) {
+        assertDispatchThread("setEventQueue");
+        if (overflowPolicy == OVERFLOW_BLOCK) {
+            throw new IllegalArgumentException("The dispatch thread cannot block on its own event queue");
+        }
+        if (mEventQueueSize > 0) {
+            throw new IllegalStateException("Cannot change the event queue while events are queued");
+        }
+        mEventQueue = capacity > 0 ? new Object[capacity] : null;
+        mEventQueueHead = 0;
+        mOverflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * @return 事件队列溢出时被丢弃或覆盖的事件数
+     */
+    public int getDroppedEventCount() {
+        return mDroppedEventCount;
+    }
+
+    private void offerQueuedEvent(Object value) {
+        Object[] queue = mEventQueue;
+        int capacity = queue.length;
+        if (mEventQueueSize == capacity) {
+            mDroppedEventCount++;
+            switch (mOverflowPolicy) {
+                case OVERFLOW_DROP_NEWEST:
+                    return;
+                case OVERFLOW_CONFLATE:
+                    queue[(mEventQueueHead + mEventQueueSize - 1) % capacity] = value;
+                    return;
+                default:
+                    queue[mEventQueueHead] = null;
+                    mEventQueueHead = (mEventQueueHead + 1) % capacity;
+                    mEventQueueSize--;
+                    break;
+            }
+        }
+        queue[(mEventQueueHead + mEventQueueSize) % capacity] = value;
+        mEventQueueSize++;
+    }
+
+    private Object pollQueuedEvent() {
+        Object[] queue = mEventQueue;
+        Object value = queue[mEventQueueHead];
+        queue[mEventQueueHead] = null;
+        mEventQueueHead = (mEventQueueHead + 1) % queue.length;
+        mEventQueueSize--;
+        return value;
+    }
+
+    /**
+     * resume the last dispatching. If there are active observers, the value will be dispatched to them.
+     * <p>
+     * This method must be called from the main thread.
+     *
+     * @param value The older value
+     */
+    @MainThread
+    public void resumeDispatch(T value) {
+        assertDispatchThread("resumeDispatch");
+        if (mData != NOT_SET && mData == value) {
+            dispatchingValue(null);
+        }
+    }
+
+    int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @return 是否持有值，没有发布过或者被{@link #clearValue()}清除之后返回false
+     */
+    public boolean hasValue() {
+        return mData != NOT_SET;
+    }
+
+    /**
+     * 设置初始值但不分发，例如从持久化存储恢复粘性值，之后注册的粘性观察者会收到它。
+     * 只能在事件还没有被其他线程使用时调用
+     */
+    protected void setInitialValue(T value) {
+        mVersion++;
+        mDispatchedVersion = mVersion;
+        mData = value;
+    }
+
+    /**
+     * 释放当前持有的值，之后注册的粘性观察者不会再收到它，已经分发过的观察者不受影响
+     */
+    @MainThread
+    protected void clearValue() {
+        mData = NOT_SET;
+    }
+
+    /**
+     * Called when the number of active observers change to 1 from 0.
+     * <p>
+     * This callback can be used to know that this LiveData is being used thus should be kept
+     * up to date.
+     */
+    protected void onActive() {
+
+    }
+
+    /**
+     * Called when the number of active observers change from 1 to 0.
+     * <p>
+     * This does not mean that there are no observers left, there may still be observers but their
+     * lifecycle states aren't {@link Lifecycle.State#STARTED} or {@link Lifecycle.State#RESUMED}
+     * (like an Activity in the back stack).
+     * <p>
+     * You can check if there are observers via {@link #hasObservers()}.
+     */
+    protected void onInactive() {
+
+    }
+
+    /**
+     * 在分发线程上，一个新的值分发给所有观察者之后调用，值真正生效的地方只有这里：
+     * 被事件队列丢弃的值不会回调，排队的值轮到它分发完之后才回调；
+     * 没有事件队列时，分发期间被新值覆盖的值只回调最后生效的那个
+     *
+     * @param value 刚分发完的值
+     */
+    protected void onValueDispatched(@Nullable T value) {
+
+    }
+
+    /**
+     * 在分发线程上注册或移除一个观察者之后调用，可以通过{@link #hasObservers()}判断是否还有观察者
+     */
+    protected void onObserversChanged() {
+
+    }
+
+    /**
+     * Returns true if this LiveData has observers.
+     *
+     * @return true if this LiveData has observers
+     */
+    @SuppressWarnings("WeakerAccess")
+    public boolean hasObservers() {
+        return mObservers.size() > 0;
+    }
+
+    /**
+     * Returns true if this LiveData has active observers.
+     *
+     * @return true if this LiveData has active observers
+     */
+    @SuppressWarnings("WeakerAccess")
+    public boolean hasActiveObservers() {
+        return mActiveCount > 0;
+    }
+
+    /**
+     * determine when the observer is active, means the observer can receive message
+     * the default value is CREATED, means if the observer's state is above create,
+     * for example, the onCreate() of activity is called
+     * you can change this value to CREATED/STARTED/RESUMED
+     * determine on witch state, you can receive message
+     *
+     * @return
+     */
+    protected Lifecycle.State observerActiveLevel() {
+        return CREATED;
+    }
+
+    @IntDef({POST_MODE_EACH, POST_MODE_CONFLATE, POST_MODE_DELIVER_ALL})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface PostMode {
+    }
+
+    @IntDef({OVERFLOW_DROP_OLDEST, OVERFLOW_DROP_NEWEST, OVERFLOW_CONFLATE, OVERFLOW_BLOCK})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface OverflowPolicy {
+    }
+
+    private class ConflatedPostTask implements Runnable {
+        @Override
+        public void run() {
+            Object newValue;
+            synchronized (mPendingLock) {
+                newValue = mPendingData;
+                mPendingData = NOT_SET;
+            }
+            //noinspection unchecked
+            setValue((T) newValue);
+        }
+    }
+
+    private class DrainPostTask implements Runnable {
+        @Override
+        public void run() {
+            ArrayList<Object> values;
+            synchronized (mPendingLock) {
+                values = mPendingValues;
+                mPendingValues = mDrainingValues;
+                mDrainingValues = values;
+            }
+            try {
+                for (int i = 0, size = values.size(); i < size; i++) {
+                    //noinspection unchecked
+                    setValue((T) values.get(i));
+                }
+            } finally {
+                values.clear();
+            }
+        }
+    }
+
+    /**
+     * BACKGROUND/ASYNC观察者的投递任务，返回值无法中断分发，会被忽略
+     */
+    private class DeliveryTask implements Runnable {
+        private final ObserverWrapper mWrapper;
+        private final T mValue;
+
+        DeliveryTask(ObserverWrapper wrapper, T value) {
+            mWrapper = wrapper;
+            mValue = value;
+        }
+
+        @Override
+        public void run() {
+            //尽力而为：观察者在投递前已被移除或变为非活跃时不再回调
+            if (mWrapper.mActive) {
+                notifyObserver(mWrapper, mValue, false);
+            }
+        }
+    }
+
+    private PostValueTask obtainPostValueTask(Object value) {
+        PostValueTask task = null;
+        synchronized (mPendingLock) {
+            if (mPostValueTaskPool != null) {
+                task = mPostValueTaskPool;
+                mPostValueTaskPool = task.mNext;
+                task.mNext = null;
+                mPostValueTaskPoolSize--;
+            }
+        }
+        if (task == null) {
+            task = new PostValueTask();
+        }
+        task.mNewValue = value;
+        return task;
+    }
+
+    private void recyclePostValueTask(PostValueTask task) {
+        task.mNewValue = null;
+        synchronized (mPendingLock) {
+            if (mPostValueTaskPoolSize < MAX_POST_VALUE_TASK_POOL_SIZE) {
+                task.mNext = mPostValueTaskPool;
+                mPostValueTaskPool = task;
+                mPostValueTaskPoolSize++;
+            }
+        }
+    }
+
+    /**
+     * 受预算限制的post任务，所有任务是同一个实例，每次执行取出最早的值并归还预算
+     */
+    private class BudgetedPostTask implements Runnable {
+        @Override
+        public void run() {
+            Object value;
+            PostBudget budget;
+            PostBudget sharedBudget;
+            synchronized (mPendingLock) {
+                Object[] values = mBudgetedValues;
+                value = values[mBudgetedHead];
+                values[mBudgetedHead] = null;
+                mBudgetedHead = (mBudgetedHead + 1) % values.length;
+                mBudgetedSize--;
+                budget = mPostBudget;
+                sharedBudget = mSharedPostBudget;
+            }
+            if (budget != null) {
+                budget.release();
+            }
+            if (sharedBudget != null) {
+                sharedBudget.release();
+            }
+            //noinspection unchecked
+            setValue((T) value);
+        }
+    }
+
+    /**
+     * 可回收的post任务，执行完后放回对象池，稳定状态下postValue不分配对象
+     */
+    private class PostValueTask implements Runnable {
+        private Object mNewValue;
+        private PostValueTask mNext;
+
+        @Override
+        public void run() {
+            Object newValue = mNewValue;
+            recyclePostValueTask(this);
+            //noinspection unchecked
+            setValue((T) newValue);
+        }
+    }
+
+    class LifecycleBoundObserver extends ObserverWrapper implements GenericLifecycleObserver {
+        @NonNull
+        final LifecycleOwner mOwner;
+
+        LifecycleBoundObserver(@NonNull LifecycleOwner owner, LiveEventObserver<T> observer) {
+            super(observer);
+            mOwner = owner;
+        }
+
+        @Override
+        boolean shouldBeActive() {
+            return mOwner.getLifecycle().getCurrentState().isAtLeast(observerActiveLevel());
+        }
+
+        @Override
+        public void onStateChanged(LifecycleOwner source, Lifecycle.Event event) {
+            if (mOwner.getLifecycle().getCurrentState() == DESTROYED) {
+                removeObserver(mObserver);
+                return;
+            }
+            activeStateChanged(shouldBeActive());
+        }
+
+        @Override
+        boolean isAttachedTo(LifecycleOwner owner) {
+            return mOwner == owner;
+        }
+
+        @Override
+        void detachObserver() {
+            mOwner.getLifecycle().removeObserver(this);
+        }
+    }
+
+    private abstract class ObserverWrapper {
+        final LiveEventObserver<T> mObserver;
+        volatile boolean mActive;
+        int mLastVersion = START_VERSION;
+        int mPriority = DEFAULT_PRIORITY;
+        ThreadMode mThreadMode = ThreadMode.POSTING;
+        //以下只在分发线程上读写，RELOCATABLE观察者超出帧预算的次数，以及是否已经移到后台
+        int mSlowCount;
+        boolean mRelocated;
+
+        ObserverWrapper(LiveEventObserver<T> observer) {
+            mObserver = observer;
+        }
+
+        abstract boolean shouldBeActive();
+
+        boolean isAttachedTo(LifecycleOwner owner) {
+            return false;
+        }
+
+        void detachObserver() {
+        }
+
+        void activeStateChanged(boolean newActive) {
+            if (newActive == mActive) {
+                return;
+            }
+            // immediately set active state, so we'd never dispatch anything to inactive
+            // owner
+            mActive = newActive;
+            boolean wasInactive = LiveEvent.this.mActiveCount == 0;
+            LiveEvent.this.mActiveCount += mActive ? 1 : -1;
+            if (wasInactive && mActive) {
+                onActive();
+            }
+            if (LiveEvent.this.mActiveCount == 0 && !mActive) {
+                onInactive();
+            }
+            if (mActive) {
+                dispatchingValue(this);
+            }
+        }
+    }
+
+    private class AlwaysActiveObserver extends ObserverWrapper {
+
+        AlwaysActiveObserver(LiveEventObserver<T> observer) {
+            super(observer);
+        }
+
+        @Override
+        boolean shouldBeActive() {
+            return true;
+        }
+    }
+
+    /**
+     * 弱引用观察者，本身作为注册的key和引用队列里的元素，回收后不需要额外的查找。
+     * equals/hashCode按原观察者计算，以便用原观察者移除
+     */
+    private static class WeakObserver<T> extends WeakReference<LiveEventObserver<T>>
+            implements LiveEventObserver<T>, SlowObserverWatchdog.WrappedObserver {
+        private final int mHashCode;
+
+        WeakObserver(LiveEventObserver<T> observer, ReferenceQueue<LiveEventObserver<T>> queue) {
+            super(observer, queue);
+            mHashCode = observer.hashCode();
+        }
+
+        @Override
+        public boolean onChanged(@Nullable T t) {
+            LiveEventObserver<T> observer = get();
+            return observer != null && observer.onChanged(t);
+        }
+
+        @Nullable
+        @Override
+        public Object getWrappedObserver() {
+            return get();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof WeakObserver)) {
+                return false;
+            }
+            Object observer = get();
+            return observer != null && observer.equals(((WeakObserver<?>) obj).get());
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.scholar.livedatabus.liveevent;
+
+
+/**
+ * {@link LongLiveEvent}的观察者，回调参数是不装箱的long
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/2]
+ */
+public interface LongLiveEventObserver {
+    /**
+     * Called when the data is changed.
+     *
+     * @param value The new data
+     * @return is the data  consumed
+     */
+    boolean onChanged(long value);
+}
@@ -0,0 +1,150 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * postValue的背压：限制已经post到分发线程、还没有执行的任务数，避免后台线程的突发事件塞满主线程的消息队列。
+ * 可以只给一个key使用（{@link LiveEvent#setPostBudget(PostBudget)}），
+ * 也可以由一条总线上的所有key共享（{@code LiveEventBus.setPostBudget}）。
+ * <p>
+ * 超出预算时按溢出策略处理：
+ * <ul>
+ * <li>{@link LiveEvent#OVERFLOW_DROP_NEWEST} 丢弃新的值</li>
+ * <li>{@link LiveEvent#OVERFLOW_DROP_OLDEST} 丢弃同一个key最早的未分发的值，新的值排到最后</li>
+ * <li>{@link LiveEvent#OVERFLOW_CONFLATE} 新的值覆盖同一个key最后一个未分发的值</li>
+ * <li>{@link LiveEvent#OVERFLOW_BLOCK} 阻塞调用postValue的线程直到有空位，超时后丢弃；在分发线程上调用时直接丢弃</li>
+ * </ul>
+ * 共享的预算用完而当前key没有未分发的值时，DROP_OLDEST和CONFLATE没有可以替换的值，丢弃新的值。
+ * 只对{@link LiveEvent#POST_MODE_EACH}生效，另外两种模式每个key最多只有一个待执行的任务
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public final class PostBudget {
+
+    private final int mMaxOutstanding;
+    private final int mOverflowPolicy;
+    private final long mBlockTimeoutNanos;
+    private final AtomicInteger mOutstanding = new AtomicInteger();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final AtomicLong mBlockedCount = new AtomicLong();
+    //由this的锁保护
+    private int mWaiters;
+
+    /**
+     * @param maxOutstanding 最多未执行的post任务数
+     * @param overflowPolicy 溢出策略，不能是{@link LiveEvent#OVERFLOW_BLOCK}，阻塞需要指定超时
+     */
+    public PostBudget(int maxOutstanding, @LiveEvent.OverflowPolicy int overflowPolicy) {
+        this(maxOutstanding, overflowPolicy, 0, TimeUnit.NANOSECONDS);
+        if (overflowPolicy == LiveEvent.OVERFLOW_BLOCK) {
+            throw new IllegalArgumentException("OVERFLOW_BLOCK requires a timeout");
+        }
+    }
+
+    /**
+     * @param blockTimeout {@link LiveEvent#OVERFLOW_BLOCK}时最多阻塞的时间
+     */
+    public PostBudget(int maxOutstanding, @LiveEvent.OverflowPolicy int overflowPolicy, long blockTimeout,
+                      @NonNull TimeUnit unit) {
+        if (maxOutstanding <= 0) {
+            throw new IllegalArgumentException("maxOutstanding must be positive");
+        }
+        mMaxOutstanding = maxOutstanding;
+        mOverflowPolicy = overflowPolicy;
+        mBlockTimeoutNanos = unit.toNanos(blockTimeout);
+    }
+
+    public int getMaxOutstanding() {
+        return mMaxOutstanding;
+    }
+
+    @LiveEvent.OverflowPolicy
+    public int getOverflowPolicy() {
+        return mOverflowPolicy;
+    }
+
+    /**
+     * @return 当前已经post、还没有执行的任务数
+     */
+    public int getOutstanding() {
+        return mOutstanding.get();
+    }
+
+    /**
+     * @return 因为超出预算被丢弃或覆盖的值的个数，包括阻塞超时
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * @return 阻塞过的postValue调用次数
+     */
+    public long getBlockedCount() {
+        return mBlockedCount.get();
+    }
+
+    long getBlockTimeoutNanos() {
+        return mBlockTimeoutNanos;
+    }
+
+    boolean tryAcquire() {
+        for (; ; ) {
+            int outstanding = mOutstanding.get();
+            if (outstanding >= mMaxOutstanding) {
+                return false;
+            }
+            if (mOutstanding.compareAndSet(outstanding, outstanding + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        mOutstanding.decrementAndGet();
+        synchronized (this) {
+            if (mWaiters > 0) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 等到有空位或者超过deadline
+     *
+     * @return 等到了空位，不保证调用方一定能拿到
+     */
+    boolean awaitRelease(long deadlineNanos) {
+        synchronized (this) {
+            mWaiters++;
+            try {
+                while (mOutstanding.get() >= mMaxOutstanding) {
+                    long remaining = deadlineNanos - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                mWaiters--;
+            }
+        }
+    }
+
+    void onDropped() {
+        mDroppedCount.incrementAndGet();
+    }
+
+    void onBlocked() {
+        mBlockedCount.incrementAndGet();
+    }
+}
@@ -0,0 +1,229 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.arch.lifecycle.LifecycleOwner;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import static com.scholar.livedatabus.liveevent.LiveEvent.DEFAULT_PRIORITY;
+import static com.scholar.livedatabus.liveevent.LiveEvent.POST_MODE_CONFLATE;
+
+
+/**
+ * 基本类型事件的基类，复用{@link LiveEvent}的注册、生命周期和按权重分发逻辑。
+ * <p>
+ * 事件值保存在子类的基本类型字段中，内部的LiveEvent只分发一个固定的哨兵对象；
+ * 每个观察者在注册时被包装一次，分发时由包装对象读取字段并回调不装箱的onChanged，
+ * 所以发布和分发路径上没有装箱也没有分配。
+ * <p>
+ * postValue的值保存在子类的基本类型数组中，一批值只post一个任务到分发线程。
+ * {@link LiveEvent#POST_MODE_CONFLATE}下只保留最后一个值，其他模式下按序分发所有值。
+ * <p>
+ * {@link ThreadMode#BACKGROUND}/{@link ThreadMode#ASYNC}观察者在投递时读取当前值，
+ * 如果期间又有新值发布，收到的是较新的值。
+ *
+ * @param <O> 观察者类型
+ * @author luwei
+ * @version [版本号, 2018/12/2]
+ */
+public abstract class PrimitiveLiveEvent<O> {
+
+    private static final Object PUBLISHED = new Object();
+    static final int INITIAL_PENDING_CAPACITY = 16;
+
+    private final Channel mChannel;
+    protected final Object mPendingLock = new Object();
+    private volatile int mPostMode = LiveEvent.POST_MODE_EACH;
+    private final Runnable mDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            drainPending();
+        }
+    };
+
+    protected PrimitiveLiveEvent(@Nullable Object key, @Nullable Dispatcher dispatcher) {
+        mChannel = new Channel(key, dispatcher);
+    }
+
+    @Nullable
+    public Object getKey() {
+        return mChannel.getKey();
+    }
+
+    /**
+     * @return 是否已经发布过值，未发布时getValue返回默认值
+     */
+    public boolean hasValue() {
+        return mChannel.getVersion() != LiveEvent.START_VERSION;
+    }
+
+    /**
+     * 见{@link LiveEvent#setPostMode(int)}，基本类型事件只区分是否合并
+     */
+    public void setPostMode(@LiveEvent.PostMode int postMode) {
+        mPostMode = postMode;
+    }
+
+    @MainThread
+    public void observe(@NonNull LifecycleOwner owner, @NonNull O observer) {
+        observe(owner, observer, DEFAULT_PRIORITY);
+    }
+
+    @MainThread
+    public void observe(@NonNull LifecycleOwner owner, @NonNull O observer, int priority) {
+        observe(owner, observer, priority, ThreadMode.POSTING);
+    }
+
+    @MainThread
+    public void observe(@NonNull LifecycleOwner owner, @NonNull O observer, int priority,
+                        @NonNull ThreadMode threadMode) {
+        mChannel.observe(owner, new ObserverAdapter(observer), priority, threadMode);
+    }
+
+    @MainThread
+    public void observeSticky(@NonNull LifecycleOwner owner, @NonNull O observer) {
+        observeSticky(owner, observer, DEFAULT_PRIORITY);
+    }
+
+    @MainThread
+    public void observeSticky(@NonNull LifecycleOwner owner, @NonNull O observer, int priority) {
+        observeSticky(owner, observer, priority, ThreadMode.POSTING);
+    }
+
+    @MainThread
+    public void observeSticky(@NonNull LifecycleOwner owner, @NonNull O observer, int priority,
+                              @NonNull ThreadMode threadMode) {
+        mChannel.observeSticky(owner, new ObserverAdapter(observer), priority, threadMode);
+    }
+
+    @MainThread
+    public void observeForever(@NonNull O observer) {
+        observeForever(observer, DEFAULT_PRIORITY);
+    }
+
+    @MainThread
+    public void observeForever(@NonNull O observer, int priority) {
+        observeForever(observer, priority, ThreadMode.POSTING);
+    }
+
+    @MainThread
+    public void observeForever(@NonNull O observer, int priority, @NonNull ThreadMode threadMode) {
+        mChannel.observeForever(new ObserverAdapter(observer), priority, threadMode);
+    }
+
+    @MainThread
+    public void observeStickyForever(@NonNull O observer) {
+        observeStickyForever(observer, DEFAULT_PRIORITY);
+    }
+
+    @MainThread
+    public void observeStickyForever(@NonNull O observer, int priority) {
+        observeStickyForever(observer, priority, ThreadMode.POSTING);
+    }
+
+    @MainThread
+    public void observeStickyForever(@NonNull O observer, int priority, @NonNull ThreadMode threadMode) {
+        mChannel.observeStickyForever(new ObserverAdapter(observer), priority, threadMode);
+    }
+
+    @MainThread
+    public void removeObserver(@NonNull O observer) {
+        mChannel.removeObserver(new ObserverAdapter(observer));
+    }
+
+    public boolean hasObservers() {
+        return mChannel.hasObservers();
+    }
+
+    public boolean hasActiveObservers() {
+        return mChannel.hasActiveObservers();
+    }
+
+    /**
+     * 子类写入新值之后调用，分发给所有观察者
+     */
+    protected final void publish() {
+        mChannel.setValue(PUBLISHED);
+    }
+
+    /**
+     * 子类确认当前值未变后调用，继续通知还没有收到事件的观察者
+     */
+    protected final void resume() {
+        mChannel.resumeDispatch(PUBLISHED);
+    }
+
+    protected final void assertDispatchThread(String methodName) {
+        if (!mChannel.getDispatcher().isDispatchThread()) {
+            throw new IllegalStateException("Cannot invoke " + methodName + " on a background"
+                    + " thread");
+        }
+    }
+
+    protected final boolean isConflating() {
+        return mPostMode == POST_MODE_CONFLATE;
+    }
+
+    /**
+     * 子类在{@link #mPendingLock}下写入待分发的值，如果写入前队列为空则调用此方法
+     */
+    protected final void scheduleDrain() {
+        mChannel.getDispatcher().post(mDrainTask);
+    }
+
+    /**
+     * 在分发线程上取出所有待分发的值，依次写入并{@link #publish()}
+     */
+    protected abstract void drainPending();
+
+    /**
+     * 读取当前值并回调观察者
+     *
+     * @return 观察者是否消费了事件
+     */
+    protected abstract boolean deliver(@NonNull O observer);
+
+    private class Channel extends LiveEvent<Object> {
+        Channel(@Nullable Object key, @Nullable Dispatcher dispatcher) {
+            super(key, dispatcher);
+        }
+    }
+
+    /**
+     * 注册时创建一次的包装对象，equals/hashCode委托给原观察者，以便按原观察者移除
+     */
+    private class ObserverAdapter implements LiveEventObserver<Object>, SlowObserverWatchdog.WrappedObserver {
+        private final O mObserver;
+
+        ObserverAdapter(O observer) {
+            mObserver = observer;
+        }
+
+        @Override
+        public boolean onChanged(@Nullable Object ignored) {
+            return deliver(mObserver);
+        }
+
+        @Nullable
+        @Override
+        public Object getWrappedObserver() {
+            return mObserver;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof PrimitiveLiveEvent.ObserverAdapter)) {
+                return false;
+            }
+            return mObserver.equals(((ObserverAdapter) obj).mObserver);
+        }
+
+        @Override
+        public int hashCode() {
+            return mObserver.hashCode();
+        }
+    }
+}
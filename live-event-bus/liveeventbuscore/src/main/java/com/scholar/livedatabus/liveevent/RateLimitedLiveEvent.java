@@ -0,0 +1,259 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上游{@link LiveEvent}的限流视图：滚动位置、搜索输入、网络状态这类频繁变化的key，
+ * 重复或者很快被覆盖的值在进入视图的分发之前就被丢掉，视图的观察者只收到限流之后的值。
+ * <ul>
+ * <li>{@link #OPERATOR_DEBOUNCE} 上游安静了一个窗口之后才发出最后一个值</li>
+ * <li>{@link #OPERATOR_THROTTLE_FIRST} 发出窗口内的第一个值，窗口内的其他值丢弃</li>
+ * <li>{@link #OPERATOR_THROTTLE_LAST} 第一个值开启窗口，窗口结束时发出窗口内的最后一个值</li>
+ * <li>{@link #OPERATOR_SAMPLE} 按固定周期采样，每个周期结束时发出这个周期内的最后一个值，周期从视图变为活跃时开始计算</li>
+ * <li>{@link #OPERATOR_DISTINCT_UNTIL_CHANGED} 和上一次发出的值equals时丢弃</li>
+ * </ul>
+ * 视图有活跃的观察者时才订阅上游，没有时退订并丢弃还没有发出的值。
+ * 所有视图共享一个定时器线程，定时器节点和回调任务都是视图自己的字段，每个事件只写几个字段，不分配对象；
+ * debounce不会每来一个值就重新调度，到期时发现上游又有新值再顺延。
+ * <p>
+ * 视图和上游使用同一个分发线程，在视图上setValue/postValue等同于发给上游，经过限流再回到视图。
+ * 粘性观察者收到的是视图最后发出的值
+ *
+ * @param <T> 事件类型
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public class RateLimitedLiveEvent<T> extends LiveEvent<T> {
+
+    public static final int OPERATOR_DEBOUNCE = 0;
+    public static final int OPERATOR_THROTTLE_FIRST = 1;
+    public static final int OPERATOR_THROTTLE_LAST = 2;
+    public static final int OPERATOR_SAMPLE = 3;
+    public static final int OPERATOR_DISTINCT_UNTIL_CHANGED = 4;
+    private static final Object NOT_SET = new Object();
+
+    private final LiveEvent<T> mSource;
+    private final int mOperator;
+    private final long mWindowNanos;
+
+    private final LiveEventObserver<T> mUpstreamObserver = new LiveEventObserver<T>() {
+        @Override
+        public boolean onChanged(@Nullable T t) {
+            onUpstreamValue(t);
+            return false;
+        }
+    };
+    private final EventTimer.Entry mTimerEntry = new EventTimer.Entry() {
+        @Override
+        void onTimer() {
+            getDispatcher().post(mTimerTask);
+        }
+    };
+    private final Runnable mTimerTask = new Runnable() {
+        @Override
+        public void run() {
+            onTimerExpired();
+        }
+    };
+
+    //以下只在分发线程上读写
+    private Object mPendingValue = NOT_SET;
+    private Object mLastEmitted = NOT_SET;
+    private long mLastUpstreamNanos;
+    private long mLastEmitNanos;
+    private long mSampleOriginNanos;
+    private boolean mTimerArmed;
+    private long mTimerDeadlineNanos;
+
+    /**
+     * @param source   上游
+     * @param operator 限流方式
+     * @param window   窗口或者采样周期，{@link #OPERATOR_DISTINCT_UNTIL_CHANGED}忽略这个参数
+     * @param unit     时间单位
+     */
+    public RateLimitedLiveEvent(@NonNull LiveEvent<T> source, @Operator int operator, long window,
+                                @NonNull TimeUnit unit) {
+        super(source.getKey());
+        if (operator < OPERATOR_DEBOUNCE || operator > OPERATOR_DISTINCT_UNTIL_CHANGED) {
+            throw new IllegalArgumentException("Unknown operator " + operator);
+        }
+        if (window <= 0 && operator != OPERATOR_DISTINCT_UNTIL_CHANGED) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        mSource = source;
+        mOperator = operator;
+        mWindowNanos = unit.toNanos(window);
+    }
+
+    @NonNull
+    public static <T> RateLimitedLiveEvent<T> debounce(@NonNull LiveEvent<T> source, long timeout,
+                                                       @NonNull TimeUnit unit) {
+        return new RateLimitedLiveEvent<>(source, OPERATOR_DEBOUNCE, timeout, unit);
+    }
+
+    @NonNull
+    public static <T> RateLimitedLiveEvent<T> throttleFirst(@NonNull LiveEvent<T> source, long window,
+                                                            @NonNull TimeUnit unit) {
+        return new RateLimitedLiveEvent<>(source, OPERATOR_THROTTLE_FIRST, window, unit);
+    }
+
+    @NonNull
+    public static <T> RateLimitedLiveEvent<T> throttleLast(@NonNull LiveEvent<T> source, long window,
+                                                           @NonNull TimeUnit unit) {
+        return new RateLimitedLiveEvent<>(source, OPERATOR_THROTTLE_LAST, window, unit);
+    }
+
+    @NonNull
+    public static <T> RateLimitedLiveEvent<T> sample(@NonNull LiveEvent<T> source, long period,
+                                                     @NonNull TimeUnit unit) {
+        return new RateLimitedLiveEvent<>(source, OPERATOR_SAMPLE, period, unit);
+    }
+
+    @NonNull
+    public static <T> RateLimitedLiveEvent<T> distinctUntilChanged(@NonNull LiveEvent<T> source) {
+        return new RateLimitedLiveEvent<>(source, OPERATOR_DISTINCT_UNTIL_CHANGED, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @NonNull
+    public LiveEvent<T> getSource() {
+        return mSource;
+    }
+
+    @Operator
+    public int getOperator() {
+        return mOperator;
+    }
+
+    @NonNull
+    @Override
+    protected Dispatcher getDispatcher() {
+        return mSource.getDispatcher();
+    }
+
+    /**
+     * 发给上游
+     */
+    @Override
+    public void postValue(T value) {
+        mSource.postValue(value);
+    }
+
+    /**
+     * 发给上游
+     */
+    @MainThread
+    @Override
+    public void setValue(T value) {
+        mSource.setValue(value);
+    }
+
+    @Override
+    protected void onActive() {
+        mSampleOriginNanos = System.nanoTime();
+        mSource.observeForever(mUpstreamObserver);
+    }
+
+    @Override
+    protected void onInactive() {
+        mSource.removeObserver(mUpstreamObserver);
+        if (mTimerArmed) {
+            mTimerArmed = false;
+            EventTimer.getInstance().cancel(mTimerEntry);
+        }
+        mPendingValue = NOT_SET;
+    }
+
+    private void onUpstreamValue(T value) {
+        switch (mOperator) {
+            case OPERATOR_DISTINCT_UNTIL_CHANGED: {
+                Object last = mLastEmitted;
+                if (last == NOT_SET || (value == null ? last != null : !value.equals(last))) {
+                    emit(value);
+                }
+                break;
+            }
+            case OPERATOR_THROTTLE_FIRST: {
+                long now = System.nanoTime();
+                if (mLastEmitted == NOT_SET || now - mLastEmitNanos >= mWindowNanos) {
+                    mLastEmitNanos = now;
+                    emit(value);
+                }
+                break;
+            }
+            case OPERATOR_DEBOUNCE: {
+                long now = System.nanoTime();
+                mPendingValue = value;
+                mLastUpstreamNanos = now;
+                if (!mTimerArmed) {
+                    arm(now + mWindowNanos);
+                }
+                break;
+            }
+            case OPERATOR_THROTTLE_LAST:
+                mPendingValue = value;
+                if (!mTimerArmed) {
+                    arm(System.nanoTime() + mWindowNanos);
+                }
+                break;
+            default:
+                mPendingValue = value;
+                if (!mTimerArmed) {
+                    long elapsed = System.nanoTime() - mSampleOriginNanos;
+                    arm(mSampleOriginNanos + (elapsed / mWindowNanos + 1) * mWindowNanos);
+                }
+                break;
+        }
+    }
+
+    private void arm(long deadlineNanos) {
+        mTimerArmed = true;
+        mTimerDeadlineNanos = deadlineNanos;
+        EventTimer.getInstance().schedule(mTimerEntry, deadlineNanos);
+    }
+
+    private void onTimerExpired() {
+        //退订之后才执行到的旧任务，或者已经处理过的重复任务
+        if (!mTimerArmed) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - mTimerDeadlineNanos < 0) {
+            //退订后又重新订阅，这是上一轮的任务
+            EventTimer.getInstance().schedule(mTimerEntry, mTimerDeadlineNanos);
+            return;
+        }
+        mTimerArmed = false;
+        if (mOperator == OPERATOR_DEBOUNCE) {
+            long quietUntil = mLastUpstreamNanos + mWindowNanos;
+            if (now - quietUntil < 0) {
+                //窗口内上游又有新值，顺延
+                arm(quietUntil);
+                return;
+            }
+        }
+        Object pending = mPendingValue;
+        if (pending != NOT_SET) {
+            mPendingValue = NOT_SET;
+            emit(pending);
+        }
+    }
+
+    private void emit(Object value) {
+        mLastEmitted = value;
+        //noinspection unchecked
+        super.setValue((T) value);
+    }
+
+    @IntDef({OPERATOR_DEBOUNCE, OPERATOR_THROTTLE_FIRST, OPERATOR_THROTTLE_LAST, OPERATOR_SAMPLE,
+            OPERATOR_DISTINCT_UNTIL_CHANGED})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Operator {
+    }
+}
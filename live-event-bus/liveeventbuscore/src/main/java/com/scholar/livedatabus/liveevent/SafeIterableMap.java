@@ -20,11 +20,16 @@ import android.support.annotation.NonNull;
 
 import java.util.Iterator;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.WeakHashMap;
 
 /**
  * LinkedList, which pretends to be a map and supports modifications during iterations.
  * It is NOT thread safe.
+ * <p>
+ * 链表按权重升序排列，同一权重的节点连续排列、按插入顺序，构成一个桶；
+ * 按权重排序的索引记录每个桶的最后一个节点，插入时直接接到所在的桶（或前一个桶）的末尾，
+ * 插入和删除都是O(log p)，p为不同权重的个数，和观察者的个数无关
  *
  * @param <K> Key type
  * @param <V> Value type
@@ -38,6 +43,8 @@ public class SafeIterableMap<K, V> implements Iterable<Map.Entry<K, V>> {
     // WeakReferences that have null in them.
     private WeakHashMap<SupportRemove<K, V>, Boolean> mIterators = new WeakHashMap<>();
     private int mSize = 0;
+    //每个权重的桶在链表中的最后一个节点
+    private TreeMap<Integer, Entry<K, V>> mBucketTails = new TreeMap<>();
 
     protected Entry<K, V> get(K k) {
         Entry<K, V> currentNode = mStart;
@@ -76,26 +83,28 @@ public class SafeIterableMap<K, V> implements Iterable<Map.Entry<K, V>> {
         if (mEnd == null) {
             mStart = newEntry;
             mEnd = mStart;
+            mBucketTails.put(priority, newEntry);
             return newEntry;
         }
-        //否则我们需要找到正确的插入位置
-        Entry<K, V> preEntry = mEnd;
-        for (; preEntry != null; ) {
-            if (preEntry.mPriority <= priority) {
-                break;
-            }
-            preEntry = preEntry.mPrevious;
+        //否则插入到同一权重的桶的末尾，没有这个桶时插入到前一个桶的末尾；最常见的是权重不小于最后一个节点，直接追加
+        Entry<K, V> preEntry;
+        if (mEnd.mPriority <= priority) {
+            preEntry = mEnd;
+        } else {
+            Map.Entry<Integer, Entry<K, V>> floor = mBucketTails.floorEntry(priority);
+            preEntry = floor != null ? floor.getValue() : null;
         }
-        if (preEntry == mEnd) {
+        mBucketTails.put(priority, newEntry);
+        if (preEntry == null) {
+            //插入到第一个
+            newEntry.mNext = mStart;
+            mStart.mPrevious = newEntry;
+            mStart = newEntry;
+        } else if (preEntry == mEnd) {
             //插入到最后一个
             mEnd.mNext = newEntry;
             newEntry.mPrevious = mEnd;
             mEnd = newEntry;
-        } else if (preEntry == null || preEntry == mStart) {
-            //插入到第一个
-            newEntry.mNext = mStart;
-            newEntry.mPrevious = mStart.mPrevious;
-            mStart = newEntry;
         } else {
             //插入到中间，不会改变mStart或者mEnd
             Entry<K, V> tmp = preEntry.mNext;
@@ -120,6 +129,14 @@ public class SafeIterableMap<K, V> implements Iterable<Map.Entry<K, V>> {
             return null;
         }
         mSize--;
+        if (mBucketTails.get(toRemove.mPriority) == toRemove) {
+            Entry<K, V> previous = toRemove.mPrevious;
+            if (previous != null && previous.mPriority == toRemove.mPriority) {
+                mBucketTails.put(toRemove.mPriority, previous);
+            } else {
+                mBucketTails.remove(toRemove.mPriority);
+            }
+        }
         if (!mIterators.isEmpty()) {
             for (SupportRemove<K, V> iter : mIterators.keySet()) {
                 iter.supportRemove(toRemove);
@@ -373,10 +390,18 @@ public class SafeIterableMap<K, V> implements Iterable<Map.Entry<K, V>> {
         }
     }
 
-    private class IteratorWithAdditions implements Iterator<Map.Entry<K, V>>, SupportRemove<K, V> {
+    public class IteratorWithAdditions implements Iterator<Map.Entry<K, V>>, SupportRemove<K, V> {
         private Entry<K, V> mCurrent;
         private boolean mBeforeStart = true;
 
+        /**
+         * 回到起点重新遍历，便于复用同一个迭代器
+         */
+        void reset() {
+            mCurrent = null;
+            mBeforeStart = true;
+        }
+
         @Override
         public void supportRemove(@NonNull Entry<K, V> entry) {
             if (entry == mCurrent) {
@@ -0,0 +1,202 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 慢观察者看门狗：在分发线程上同步回调的onChanged超过帧预算时，按key和观察者的类记录。
+ * 观察者的类会去掉库内部的包装（弱引用、基本类型适配），记录的是调用方自己的类。
+ * 没有key的LiveEvent按"类名@identityHashCode的十六进制"记录，统计不会让LiveEvent无法回收。
+ * <p>
+ * 以{@link ThreadMode#RELOCATABLE}注册的观察者超出预算的次数达到阈值后，之后的回调移到后台线程，
+ * 不再阻塞后面的观察者和主线程。通过{@link LiveEvent#setSlowObserverWatchdog(SlowObserverWatchdog)}全局安装。
+ * <p>
+ * 统计在分发线程写入，可以在任意线程读取
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public class SlowObserverWatchdog {
+
+    /**
+     * 默认的帧预算，60fps下一帧的时间
+     */
+    public static final long DEFAULT_FRAME_BUDGET_MILLIS = 16;
+    /**
+     * 默认超出预算3次后移到后台，避免偶发的GC停顿误伤
+     */
+    public static final int DEFAULT_RELOCATE_THRESHOLD = 3;
+
+    private final long mFrameBudgetNanos;
+    private final int mRelocateThreshold;
+    private final ConcurrentMap<Object, Offender> mOffendersByKey = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, Offender> mOffendersByClass = new ConcurrentHashMap<>();
+
+    public SlowObserverWatchdog() {
+        this(DEFAULT_FRAME_BUDGET_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_RELOCATE_THRESHOLD);
+    }
+
+    /**
+     * @param frameBudget       单次onChanged的预算
+     * @param unit              时间单位
+     * @param relocateThreshold RELOCATABLE观察者超出预算多少次后移到后台
+     */
+    public SlowObserverWatchdog(long frameBudget, @NonNull TimeUnit unit, int relocateThreshold) {
+        if (frameBudget <= 0 || relocateThreshold <= 0) {
+            throw new IllegalArgumentException("frameBudget and relocateThreshold must be positive");
+        }
+        mFrameBudgetNanos = unit.toNanos(frameBudget);
+        mRelocateThreshold = relocateThreshold;
+    }
+
+    public long getFrameBudgetNanos() {
+        return mFrameBudgetNanos;
+    }
+
+    public int getRelocateThreshold() {
+        return mRelocateThreshold;
+    }
+
+    /**
+     * @param key 事件的key，没有key的LiveEvent见类的说明
+     * @return 该key上的慢观察者记录，没有时返回null
+     */
+    @Nullable
+    public Offender getByKey(@NonNull Object key) {
+        return mOffendersByKey.get(key);
+    }
+
+    /**
+     * @param observerClass 观察者的类
+     * @return 该类的观察者在所有key上的慢回调记录，没有时返回null
+     */
+    @Nullable
+    public Offender getByClass(@NonNull Class<?> observerClass) {
+        return mOffendersByClass.get(observerClass);
+    }
+
+    @NonNull
+    public Map<Object, Offender> getOffendersByKey() {
+        return mOffendersByKey;
+    }
+
+    @NonNull
+    public Map<Class<?>, Offender> getOffendersByClass() {
+        return mOffendersByClass;
+    }
+
+    public void reset() {
+        mOffendersByKey.clear();
+        mOffendersByClass.clear();
+    }
+
+    /**
+     * 记录完一次慢回调之后在分发线程上调用，可以覆写用于打印日志或上报
+     *
+     * @param key           事件的key，没有key的LiveEvent是描述它的字符串
+     * @param observerClass 观察者的类，已经去掉库内部的包装
+     * @param durationNanos onChanged的耗时
+     * @param relocated     这次之后观察者被移到了后台线程
+     */
+    protected void onSlowObserver(@NonNull Object key, @NonNull Class<?> observerClass, long durationNanos,
+                                  boolean relocated) {
+    }
+
+    void record(@NonNull Object key, @NonNull LiveEventObserver<?> observer, long durationNanos,
+                boolean relocated) {
+        Class<?> observerClass = observerClass(observer);
+        offenderFor(mOffendersByKey, key).record(durationNanos, relocated);
+        offenderFor(mOffendersByClass, observerClass).record(durationNanos, relocated);
+        onSlowObserver(key, observerClass, durationNanos, relocated);
+    }
+
+    private static <K> Offender offenderFor(ConcurrentMap<K, Offender> offenders, K key) {
+        Offender offender = offenders.get(key);
+        if (offender == null) {
+            Offender created = new Offender();
+            offender = offenders.putIfAbsent(key, created);
+            if (offender == null) {
+                offender = created;
+            }
+        }
+        return offender;
+    }
+
+    /**
+     * 去掉库内部的包装，弱引用已经被回收时返回包装本身的类
+     */
+    @NonNull
+    static Class<?> observerClass(@NonNull Object observer) {
+        while (observer instanceof WrappedObserver) {
+            Object wrapped = ((WrappedObserver) observer).getWrappedObserver();
+            if (wrapped == null) {
+                break;
+            }
+            observer = wrapped;
+        }
+        return observer.getClass();
+    }
+
+    /**
+     * 库内部对观察者的包装
+     */
+    interface WrappedObserver {
+        @Nullable
+        Object getWrappedObserver();
+    }
+
+    public static class Offender {
+        private final AtomicLong mSlowCount = new AtomicLong();
+        private final AtomicLong mTotalNanos = new AtomicLong();
+        private final AtomicLong mMaxNanos = new AtomicLong();
+        private final AtomicLong mRelocated = new AtomicLong();
+
+        void record(long durationNanos, boolean relocated) {
+            mSlowCount.incrementAndGet();
+            mTotalNanos.addAndGet(durationNanos);
+            long max;
+            while ((max = mMaxNanos.get()) < durationNanos && !mMaxNanos.compareAndSet(max, durationNanos)) {
+                // retry
+            }
+            if (relocated) {
+                mRelocated.incrementAndGet();
+            }
+        }
+
+        /**
+         * @return 超出预算的回调次数
+         */
+        public long getSlowCount() {
+            return mSlowCount.get();
+        }
+
+        public long getTotalNanos() {
+            return mTotalNanos.get();
+        }
+
+        public long getMaxNanos() {
+            return mMaxNanos.get();
+        }
+
+        /**
+         * @return 被移到后台线程的观察者个数
+         */
+        public long getRelocatedCount() {
+            return mRelocated.get();
+        }
+
+        @Override
+        public String toString() {
+            return "slow=" + getSlowCount()
+                    + ", totalNanos=" + getTotalNanos()
+                    + ", maxNanos=" + getMaxNanos()
+                    + ", relocated=" + getRelocatedCount();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.scholar.livedatabus.liveevent;
+
+
+/**
+ * 观察者onChanged回调所在的线程
+ *
+ * @author luwei
+ * @version [版本号, 2018/12/2]
+ */
+public enum ThreadMode {
+    /**
+     * 在分发线程上、在分发循环中同步回调，默认模式。支持按权重排序和消费事件
+     */
+    POSTING,
+    /**
+     * 在主线程（即{@link Dispatcher}的分发线程）上回调。分发本身就在主线程上进行，
+     * 所以和POSTING一样同步回调，同样支持按权重排序和消费事件
+     */
+    MAIN,
+    /**
+     * 在一个串行的后台线程上回调，同一个后台线程上的回调按分发顺序执行。
+     * 返回值被忽略，不能消费事件
+     */
+    BACKGROUND,
+    /**
+     * 在线程池上回调，回调之间没有顺序保证。返回值被忽略，不能消费事件
+     */
+    ASYNC,
+    /**
+     * 先和POSTING一样在分发线程上同步回调；安装了{@link SlowObserverWatchdog}时，
+     * 超出帧预算的次数达到阈值后，之后的回调移到BACKGROUND的串行后台线程上，从此返回值被忽略，不能再消费事件。
+     * 适用于不关心回调线程、偶尔做重活的观察者
+     */
+    RELOCATABLE
+}
@@ -0,0 +1,241 @@
+package com.scholar.livedatabus.liveevent;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+
+/**
+ * 上游{@link LiveEvent}的转换视图：map、filter、switchMap。
+ * <p>
+ * 在一个转换视图上继续转换时，新的视图不订阅前一个视图，而是把前一个视图的所有阶段复制过来、追加新的阶段，
+ * 直接订阅最初的上游。所以{@code map -> filter -> map}这样的链只有一个观察者，
+ * 上游的每个值依次经过所有阶段，最后只在视图上分发一次，而不是每一级都完整分发一次；中间的视图没有观察者时不会订阅任何东西。
+ * 各阶段应当是无状态的，中间的视图也有观察者时，前面的阶段会被各自执行一次。
+ * <p>
+ * switchMap把值转换成另一个LiveEvent并改为观察它（粘性，会先收到它当前的值），切换时退订前一个；
+ * 它之前的阶段作用于上游的值，之后的阶段作用于当前内层LiveEvent的值，一条链里最多融合一个switchMap。
+ * <p>
+ * 视图有活跃的观察者时才订阅上游，没有时退订。switchMap视图不活跃时保留当前的内层，重新活跃时接着观察它，
+ * 期间内层有新的值时补发最新的一个，和Android的Transformations.switchMap一致；上游在不活跃期间的值不会补发。
+ * 转换之后的值类型不同，不能通过视图反向发布，视图上的setValue/postValue抛出UnsupportedOperationException
+ *
+ * @param <T> 视图的事件类型
+ * @author luwei
+ * @version [版本号, 2018/12/9]
+ */
+public class TransformedLiveEvent<T> extends LiveEvent<T> {
+
+    /**
+     * 函数是{@link EventFunction}，返回转换之后的值
+     */
+    public static final int STAGE_MAP = 0;
+    /**
+     * 函数是{@link EventPredicate}，返回false的值被丢弃
+     */
+    public static final int STAGE_FILTER = 1;
+    /**
+     * 函数是{@link EventFunction}，返回要切换过去的LiveEvent，返回null时只退订当前的
+     */
+    public static final int STAGE_SWITCH_MAP = 2;
+    private static final Object FILTERED = new Object();
+
+    private final LiveEvent<Object> mSource;
+    private final Object[] mFunctions;
+    private final int[] mStages;
+    //switchMap阶段的下标，没有时为-1
+    private final int mSwitchIndex;
+
+    private final LiveEventObserver<Object> mSourceObserver = new LiveEventObserver<Object>() {
+        @Override
+        public boolean onChanged(@Nullable Object o) {
+            onSourceValue(o);
+            return false;
+        }
+    };
+    private final LiveEventObserver<Object> mInnerObserver = new LiveEventObserver<Object>() {
+        @Override
+        public boolean onChanged(@Nullable Object o) {
+            onInnerValue(o);
+            return false;
+        }
+    };
+    //以下只在分发线程上读写，视图不活跃时保留内层，只退订
+    private LiveEvent<Object> mInner;
+    //退订时内层的版本
+    private int mInnerVersion;
+
+    /**
+     * source本身是转换视图、并且不会出现第二个switchMap时，和它融合成一个视图
+     *
+     * @param source   上游
+     * @param stage    阶段的类型
+     * @param function 阶段的函数，类型见各个阶段的说明
+     */
+    @SuppressWarnings("unchecked")
+    public TransformedLiveEvent(@NonNull LiveEvent<?> source, @Stage int stage, @NonNull Object function) {
+        super(source.getKey());
+        boolean valid = stage == STAGE_FILTER ? function instanceof EventPredicate
+                : (stage == STAGE_MAP || stage == STAGE_SWITCH_MAP) && function instanceof EventFunction;
+        if (!valid) {
+            throw new IllegalArgumentException("Illegal function " + function + " for stage " + stage);
+        }
+        TransformedLiveEvent<?> upstream = source instanceof TransformedLiveEvent
+                ? (TransformedLiveEvent<?>) source : null;
+        if (upstream != null && (stage != STAGE_SWITCH_MAP || upstream.mSwitchIndex < 0)) {
+            int count = upstream.mStages.length;
+            mSource = upstream.mSource;
+            mFunctions = Arrays.copyOf(upstream.mFunctions, count + 1);
+            mStages = Arrays.copyOf(upstream.mStages, count + 1);
+            mFunctions[count] = function;
+            mStages[count] = stage;
+            mSwitchIndex = stage == STAGE_SWITCH_MAP ? count : upstream.mSwitchIndex;
+        } else {
+            mSource = (LiveEvent<Object>) source;
+            mFunctions = new Object[]{function};
+            mStages = new int[]{stage};
+            mSwitchIndex = stage == STAGE_SWITCH_MAP ? 0 : -1;
+        }
+    }
+
+    @NonNull
+    public static <I, O> TransformedLiveEvent<O> map(@NonNull LiveEvent<I> source,
+                                                     @NonNull EventFunction<? super I, ? extends O> function) {
+        return new TransformedLiveEvent<>(source, STAGE_MAP, function);
+    }
+
+    @NonNull
+    public static <T> TransformedLiveEvent<T> filter(@NonNull LiveEvent<T> source,
+                                                     @NonNull EventPredicate<? super T> predicate) {
+        return new TransformedLiveEvent<>(source, STAGE_FILTER, predicate);
+    }
+
+    @NonNull
+    public static <I, O> TransformedLiveEvent<O> switchMap(
+            @NonNull LiveEvent<I> source, @NonNull EventFunction<? super I, ? extends LiveEvent<O>> function) {
+        return new TransformedLiveEvent<>(source, STAGE_SWITCH_MAP, function);
+    }
+
+    /**
+     * @return 实际订阅的上游，融合之后是整条链最初的上游
+     */
+    @NonNull
+    public LiveEvent<?> getSource() {
+        return mSource;
+    }
+
+    /**
+     * @return 融合在这个视图里的阶段数
+     */
+    public int getStageCount() {
+        return mStages.length;
+    }
+
+    @NonNull
+    @Override
+    protected Dispatcher getDispatcher() {
+        return mSource.getDispatcher();
+    }
+
+    @Override
+    public void postValue(T value) {
+        throw new UnsupportedOperationException("Cannot publish to a transformed view, publish to its source");
+    }
+
+    @MainThread
+    @Override
+    public void setValue(T value) {
+        throw new UnsupportedOperationException("Cannot publish to a transformed view, publish to its source");
+    }
+
+    @Override
+    protected void onActive() {
+        mSource.observeForever(mSourceObserver);
+        LiveEvent<Object> inner = mInner;
+        if (inner != null) {
+            if (inner.getVersion() != mInnerVersion) {
+                inner.observeStickyForever(mInnerObserver);
+            } else {
+                inner.observeForever(mInnerObserver);
+            }
+        }
+    }
+
+    @Override
+    protected void onInactive() {
+        mSource.removeObserver(mSourceObserver);
+        LiveEvent<Object> inner = mInner;
+        if (inner != null) {
+            inner.removeObserver(mInnerObserver);
+            mInnerVersion = inner.getVersion();
+        }
+    }
+
+    private void onSourceValue(Object value) {
+        if (mSwitchIndex < 0) {
+            value = applyStages(value, 0, mStages.length);
+            if (value != FILTERED) {
+                emit(value);
+            }
+            return;
+        }
+        value = applyStages(value, 0, mSwitchIndex);
+        if (value != FILTERED) {
+            //noinspection unchecked
+            switchTo(((EventFunction<Object, LiveEvent<Object>>) mFunctions[mSwitchIndex]).apply(value));
+        }
+    }
+
+    private void onInnerValue(Object value) {
+        value = applyStages(value, mSwitchIndex + 1, mStages.length);
+        if (value != FILTERED) {
+            emit(value);
+        }
+    }
+
+    private void switchTo(LiveEvent<Object> inner) {
+        if (inner == mInner) {
+            return;
+        }
+        if (mInner != null) {
+            mInner.removeObserver(mInnerObserver);
+        }
+        mInner = inner;
+        if (inner != null) {
+            inner.observeStickyForever(mInnerObserver);
+        }
+    }
+
+    /**
+     * 依次执行[from, to)的阶段
+     *
+     * @return 转换之后的值，被过滤时返回FILTERED
+     */
+    @SuppressWarnings("unchecked")
+    private Object applyStages(Object value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (mStages[i] == STAGE_FILTER) {
+                if (!((EventPredicate<Object>) mFunctions[i]).test(value)) {
+                    return FILTERED;
+                }
+            } else {
+                value = ((EventFunction<Object, Object>) mFunctions[i]).apply(value);
+            }
+        }
+        return value;
+    }
+
+    private void emit(Object value) {
+        //noinspection unchecked
+        super.setValue((T) value);
+    }
+
+    @IntDef({STAGE_MAP, STAGE_FILTER, STAGE_SWITCH_MAP})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Stage {
+    }
+}